@@ -0,0 +1,67 @@
+package project;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Instructions per second of the table-driven Decoder against the AsmCommand path.
+ * Every invocation decodes the same BATCH instructions taken from a synthetic .text.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DecoderBenchmark {
+    private static final int BATCH = 1 << 16;
+
+    @Param({"0.5"})
+    public double rvcDensity;
+
+    private final int[] raw = new int[BATCH];
+    private final int[] addresses = new int[BATCH];
+    private final LabelTable labels = new LabelTable();
+    private final DecodedInstruction decoded = new DecodedInstruction();
+
+    @Setup
+    public void setup() {
+        byte[] text = SyntheticText.generate(4 * BATCH, rvcDensity, 42);
+        ElfData data = new ElfData(ByteBuffer.wrap(text));
+        int pos = 0;
+        for (int i = 0; i < BATCH; i++) {
+            raw[i] = Decoder.getLength(data.getByte(pos)) == 4 ? data.getWord(pos) : data.getHalf(pos);
+            addresses[i] = 0x10000 + pos;
+            pos += Decoder.getLength(raw[i]);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void decoder(Blackhole bh) {
+        for (int i = 0; i < BATCH; i++) {
+            Decoder.decode(raw[i], addresses[i], decoded);
+            bh.consume(decoded.mnemonic);
+            bh.consume(decoded.imm);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void asmCommandJumpAddress(Blackhole bh) {
+        for (int i = 0; i < BATCH; i++) {
+            bh.consume(new AsmCommand(raw[i], addresses[i], labels).getJumpAddress());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void asmCommandToString(Blackhole bh) {
+        for (int i = 0; i < BATCH; i++) {
+            bh.consume(new AsmCommand(raw[i], addresses[i], labels).toString());
+        }
+    }
+}
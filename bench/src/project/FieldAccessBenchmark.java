@@ -0,0 +1,94 @@
+package project;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Walks .text the way readText does, comparing the old copy-and-shift field reads
+ * with the little-endian ElfData view. Run with "-prof gc": gc.alloc.rate.norm of
+ * "view" stays at 0 B/op, "copying" allocates a fresh array for every instruction.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FieldAccessBenchmark {
+    @Param({"elfs/test2.elf", "synthetic"})
+    public String input;
+
+    @Param({"16777216"})
+    public int syntheticSize;
+
+    private byte[] bytes;
+    private ElfData data;
+    private int textStart;
+    private int textEnd;
+
+    @Setup
+    public void setup() throws IOException {
+        if (input.equals("synthetic")) {
+            bytes = SyntheticText.generate(syntheticSize, 0.5, 42);
+            textStart = 0;
+            textEnd = bytes.length;
+        } else {
+            bytes = Files.readAllBytes(Paths.get(input));
+            SectionHeader text = new ElfParser(bytes).readModel().getText();
+            textStart = text.getSh_offset();
+            textEnd = textStart + text.getSh_size();
+        }
+        data = new ElfData(ByteBuffer.wrap(bytes));
+    }
+
+    @Benchmark
+    public void view(Blackhole bh) {
+        int pos = textStart;
+        while (pos < textEnd) {
+            if ((data.getByte(pos) & 0x3) == 0x3) {
+                bh.consume(data.getWord(pos));
+                pos += 4;
+            } else {
+                bh.consume(data.getHalf(pos));
+                pos += 2;
+            }
+        }
+    }
+
+    @Benchmark
+    public void copying(Blackhole bh) {
+        int pos = textStart;
+        while (pos < textEnd) {
+            if ((bytes[pos] & 0x3) == 0x3) {
+                bh.consume(littleEndianToInt(readSeq(pos, 4)));
+                pos += 4;
+            } else {
+                bh.consume(littleEndianToInt(readSeq(pos, 2)));
+                pos += 2;
+            }
+        }
+    }
+
+    private byte[] readSeq(int pos, int len) {
+        Assert.ensure(pos + len <= bytes.length,
+                "Couldn't read sequence. Pos is %s, len is %s but file size is %s",
+                pos, len, bytes.length);
+        return Arrays.copyOfRange(bytes, pos, pos + len);
+    }
+
+    private static int littleEndianToInt(byte[] number) {
+        int res = 0;
+        for (int i = number.length - 1; i >= 0; i--) {
+            res <<= 8;
+            res |= Byte.toUnsignedInt(number[i]);
+        }
+        return res;
+    }
+}
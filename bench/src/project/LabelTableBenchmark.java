@@ -0,0 +1,78 @@
+package project;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Label discovery (one putGenerated per branch target) followed by tag assignment
+ * (one lookup per instruction), on a .text where every third instruction branches.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LabelTableBenchmark {
+    @Param({"1000000"})
+    public int instructions;
+
+    @Param({"0.33"})
+    public double branchDensity;
+
+    private int[] addresses;
+    private int[] targets;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        addresses = new int[instructions];
+        int branches = 0;
+        int[] found = new int[instructions];
+        int address = 0x10000;
+        for (int i = 0; i < instructions; i++) {
+            addresses[i] = address;
+            address += random.nextBoolean() ? 2 : 4;
+        }
+        for (int i = 0; i < instructions; i++) {
+            if (random.nextDouble() < branchDensity) {
+                found[branches++] = addresses[Math.max(0, Math.min(instructions - 1, i + random.nextInt(256) - 128))];
+            }
+        }
+        targets = java.util.Arrays.copyOf(found, branches);
+    }
+
+    @Benchmark
+    public void hashMap(Blackhole bh) {
+        Map<Integer, String> tags = new HashMap<>();
+        int loc = 0;
+        for (int target : targets) {
+            if (!tags.containsKey(target)) {
+                tags.put(target, String.format("LOC_%05x", loc++));
+            }
+        }
+        for (int address : addresses) {
+            String tag = "";
+            if (tags.containsKey(address)) {
+                tag = tags.get(address);
+            }
+            bh.consume(tag);
+        }
+    }
+
+    @Benchmark
+    public void labelTable(Blackhole bh) {
+        LabelTable tags = new LabelTable();
+        for (int target : targets) {
+            tags.putGenerated(target);
+        }
+        for (int address : addresses) {
+            bh.consume(tags.get(address));
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package project;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Every stage of ElfParser.parse on its own: headers, .symtab, .text decoding, tag assignment, --fold and rendering,
+ * with the legacy AsmCommand.toString rendering next to it. Inputs are paths relative to the working
+ * directory or "synthetic", an ElfGenerator executable with syntheticSize bytes of .text. Run from the repository root:
+ *   java -jar bench/target/benchmarks.jar StageBenchmark -prof gc
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StageBenchmark {
+    @Param({"elfs/sample.elf", "elfs/test.elf", "elfs/test2.elf", "synthetic"})
+    public String input;
+
+    @Param({"1048576"})
+    public int syntheticSize;
+
+    @Param({"0.5"})
+    public double rvcDensity;
+
+    @Param({"0.15"})
+    public double branchDensity;
+
+    private ElfParser parser;
+    private ElfModel model;
+    private InstructionStore text;
+    private PrintWriter sink;
+
+    @Setup
+    public void setup() throws IOException {
+        byte[] bytes;
+        if (input.equals("synthetic")) {
+            ElfGenerator generator = new ElfGenerator();
+            generator.setTextSize(syntheticSize);
+            generator.setMix(0.9 * (1 - rvcDensity), 0.1 * (1 - rvcDensity), rvcDensity);
+            generator.setBranchDensity(branchDensity);
+            generator.setSymbolCount(syntheticSize / 1024);
+            bytes = generator.generate();
+        } else {
+            bytes = Files.readAllBytes(Paths.get(input));
+        }
+        parser = new ElfParser(bytes);
+        model = parser.readModel();
+        parser.addSymbolLabels(model);
+        text = parser.readText(model);
+        parser.assignLabels(text);
+        sink = new PrintWriter(Writer.nullWriter());
+    }
+
+    @Benchmark
+    public SectionHeader[] headers() {
+        return parser.readAllSectionHeaders(parser.readElfHeader());
+    }
+
+    @Benchmark
+    public Symbol[] symtab() {
+        return parser.readSymtab(model.getSymtab(), model.getHeader().is64());
+    }
+
+    @Benchmark
+    public InstructionStore readText() {
+        parser.tags = new LabelTable();
+        return parser.readText(model);
+    }
+
+    @Benchmark
+    public InstructionStore tags() {
+        parser.assignLabels(text);
+        return text;
+    }
+
+    @Benchmark
+    public AddressFolder fold() {
+        return new AddressFolder(text, model.getInstructionSet());
+    }
+
+    @Benchmark
+    public void render() {
+        parser.printText(text, sink);
+    }
+
+    @Benchmark
+    public void asmCommandToString(Blackhole bh) {
+        for (int i = 0; i < text.size(); i++) {
+            bh.consume(new AsmCommand(text.getRaw(i), text.getAddress(i), parser.tags).toString());
+        }
+    }
+}
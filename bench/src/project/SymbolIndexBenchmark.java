@@ -0,0 +1,84 @@
+package project;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * "Which function contains this PC" for a batch of addresses, either random or sorted like a
+ * sampled trace. The TreeMap floorEntry lookup is what callers would write without the index.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SymbolIndexBenchmark {
+    @Param({"100000"})
+    public int functions;
+
+    @Param({"1000000"})
+    public int queries;
+
+    @Param({"false", "true"})
+    public boolean sorted;
+
+    private List<Symbol> symbols;
+    private int[] pcs;
+    private int[] out;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        symbols = new ArrayList<>();
+        int address = 0x80000000;
+        for (int i = 0; i < functions; i++) {
+            int size = 16 + 2 * random.nextInt(256);
+            symbols.add(new Symbol(i, 0, address, size, 0x12, 0, 1)); // GLOBAL FUNC in section 1
+            address += size + 2 * random.nextInt(4);
+        }
+        pcs = new int[queries];
+        long span = Integer.toUnsignedLong(address) - 0x80000000L;
+        for (int i = 0; i < queries; i++) {
+            pcs[i] = (int) (0x80000000L + (long) (random.nextDouble() * span));
+        }
+        if (sorted) {
+            for (int i = 0; i < queries; i++) {
+                pcs[i] ^= Integer.MIN_VALUE;
+            }
+            java.util.Arrays.sort(pcs);
+            for (int i = 0; i < queries; i++) {
+                pcs[i] ^= Integer.MIN_VALUE;
+            }
+        }
+        out = new int[queries];
+    }
+
+    @Benchmark
+    public void treeMap(Blackhole bh) {
+        TreeMap<Long, Symbol> byStart = new TreeMap<>();
+        for (Symbol symbol : symbols) {
+            byStart.put(Integer.toUnsignedLong(symbol.getValue()), symbol);
+        }
+        for (int pc : pcs) {
+            long address = Integer.toUnsignedLong(pc);
+            Map.Entry<Long, Symbol> entry = byStart.floorEntry(address);
+            int found = entry != null && address < entry.getKey() + Integer.toUnsignedLong(entry.getValue().getSize())
+                    ? entry.getValue().getSymbolIndex() : SymbolIndex.NONE;
+            bh.consume(found);
+        }
+    }
+
+    @Benchmark
+    public int[] symbolIndex() {
+        new SymbolIndex(symbols).containing(pcs, out);
+        return out;
+    }
+}
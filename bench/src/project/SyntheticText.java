@@ -0,0 +1,40 @@
+package project;
+
+import java.util.Random;
+
+public class SyntheticText {
+    private static final int[] RV32_OPCODES = {
+            0b0110011, 0b0010011, 0b0000011, 0b0100011, 0b1100011, 0b0110111, 0b0010111, 0b1101111
+    };
+
+    public static byte[] generate(int size, double rvcDensity, long seed) {
+        Random random = new Random(seed);
+        byte[] text = new byte[size];
+        int pos = 0;
+        while (pos + 4 <= size) {
+            if (random.nextDouble() < rvcDensity) {
+                int inst = random.nextInt(1 << 16);
+                if ((inst & 0b11) == 0b11) {
+                    inst &= ~0b1;
+                }
+                putHalf(text, pos, inst);
+                pos += 2;
+            } else {
+                int inst = (random.nextInt() & ~0x7f) | RV32_OPCODES[random.nextInt(RV32_OPCODES.length)];
+                putHalf(text, pos, inst);
+                putHalf(text, pos + 2, inst >>> 16);
+                pos += 4;
+            }
+        }
+        while (pos + 2 <= size) {
+            putHalf(text, pos, 0x0001); // C.NOP
+            pos += 2;
+        }
+        return text;
+    }
+
+    private static void putHalf(byte[] text, int pos, int value) {
+        text[pos] = (byte) value;
+        text[pos + 1] = (byte) (value >>> 8);
+    }
+}
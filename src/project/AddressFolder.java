@@ -0,0 +1,149 @@
+package project;
+
+// Folds AUIPC/LUI with the ADDI, load, store or JALR that uses the register they set into the address
+// it forms. One linear scan per basic block with the value of every register that holds an AUIPC/LUI
+// result. Blocks are cut like in ControlFlowGraph, at labels (every jump target and symbol) and after
+// jumps and branches, without building the graph: state is only dropped while something is known.
+// Calls drop it too, the callee may change any register. Registers set any other way (LI,
+// arithmetic, loads) are unknown.
+// Folds are kept in instruction order: indexes into the InstructionStore with the address they form
+public final class AddressFolder {
+    public static final int JUMP = 1; // JALR, C.JR or C.JALR, the address is a jump target
+    public static final int ABSOLUTE = 2; // Formed from LUI, not relative to the instruction's address
+
+    private final IntList indexes = new IntList();
+    private final IntList addresses = new IntList();
+    private final IntList kinds = new IntList();
+
+    // Labels must be assigned first
+    public AddressFolder(InstructionStore text, InstructionSet isa) {
+        int[] values = new int[32];
+        DecodedInstruction cmd = new DecodedInstruction();
+        int known = 0; // Bit per register whose value is in values
+        int absolute = 0; // Known registers that came from LUI
+        for (int i = 0; i < text.size(); i++) {
+            int inst = text.getRaw(i);
+            if (known != 0 && text.getLabel(i) != InstructionStore.NO_LABEL) {
+                known = 0; // Block start
+            }
+            if (known == 0 && !isUpper(inst)) {
+                continue; // Nothing to fold and nothing to forget
+            }
+            if (isArithmetic(inst)) {
+                known &= ~(1 << ((inst >>> 7) & 0x1f)); // Only overwrites rd, no need to decode
+                continue;
+            }
+            isa.decode(inst, text.getAddress(i), cmd);
+            int rd = cmd.rd;
+            switch (cmd.mnemonic) {
+                case AUIPC -> {
+                    values[rd] = cmd.address + cmd.imm;
+                    known |= 1 << rd;
+                    absolute &= ~(1 << rd);
+                }
+                case LUI, C_LUI -> {
+                    values[rd] = cmd.imm;
+                    known |= 1 << rd;
+                    absolute |= 1 << rd;
+                }
+                case ADDI, ADDIW, C_ADDI, C_ADDIW -> {
+                    if ((known & (1 << cmd.rs1)) != 0) {
+                        int address = values[cmd.rs1] + cmd.imm;
+                        add(i, address, (absolute >>> cmd.rs1 & 1) == 1 ? ABSOLUTE : 0);
+                        values[rd] = address;
+                        absolute = absolute & ~(1 << rd) | (absolute >>> cmd.rs1 & 1) << rd;
+                        known |= 1 << rd;
+                    } else {
+                        known &= ~(1 << rd);
+                    }
+                }
+                case C_MV -> {
+                    if ((known & (1 << cmd.rs2)) != 0) {
+                        values[rd] = values[cmd.rs2];
+                        known |= 1 << rd;
+                        absolute = absolute & ~(1 << rd) | (absolute >>> cmd.rs2 & 1) << rd;
+                    } else {
+                        known &= ~(1 << rd);
+                    }
+                }
+                case JALR, C_JR, C_JALR -> {
+                    if ((known & (1 << cmd.rs1)) != 0) {
+                        add(i, values[cmd.rs1] + cmd.imm, JUMP | (absolute >>> cmd.rs1 & 1) * ABSOLUTE);
+                    }
+                    if (rd != 0) {
+                        known = 0; // A call, the callee may change any register
+                    }
+                }
+                case JAL, C_JAL -> {
+                    if (rd != 0) {
+                        known = 0;
+                    }
+                }
+                case ECALL -> known = 0;
+                default -> {
+                    switch (cmd.format) {
+                        case LOAD, STORE, STORE_C -> {
+                            if ((known & (1 << cmd.rs1)) != 0) {
+                                add(i, values[cmd.rs1] + cmd.imm, (absolute >>> cmd.rs1 & 1) * ABSOLUTE);
+                            }
+                        }
+                        default -> {
+                        }
+                    }
+                    if (writesRd(cmd.format)) {
+                        known &= ~(1 << rd);
+                    }
+                }
+            }
+            if (cmd.hasTarget || cmd.mnemonic == Mnemonic.JALR || cmd.mnemonic == Mnemonic.C_JR) {
+                known = 0; // Block end
+            }
+            known &= ~1; // zero stays zero
+        }
+    }
+
+    // AUIPC, LUI and C.LUI, the only instructions that start a fold
+    private static boolean isUpper(int inst) {
+        if ((inst & 0b11) == 0b11) {
+            int opcode = inst & 0x7f;
+            return opcode == 0b0010111 || opcode == 0b0110111;
+        }
+        return (inst & 0xe003) == 0x6001 && ((inst >>> 7) & 0x1f) != 2; // C.LUI, not C.ADDI16SP
+    }
+
+    // OP, OP-32 and the OP-IMM/OP-IMM-32 forms other than ADDI/ADDIW
+    private static boolean isArithmetic(int inst) {
+        int opcode = inst & 0x7f;
+        return opcode == 0b0110011 || opcode == 0b0111011
+                || (opcode == 0b0010011 || opcode == 0b0011011) && (inst & 0x7000) != 0;
+    }
+
+    private static boolean writesRd(DecodedInstruction.Format format) {
+        return switch (format) {
+            case NONE, STORE, STORE_C, BRANCH, C_BRANCH -> false;
+            default -> true;
+        };
+    }
+
+    private void add(int index, int address, int kind) {
+        indexes.add(index);
+        addresses.add(address);
+        kinds.add(kind);
+    }
+
+    public int size() {
+        return indexes.size();
+    }
+
+    public int getIndex(int fold) {
+        return indexes.get(fold);
+    }
+
+    public int getAddress(int fold) {
+        return addresses.get(fold);
+    }
+
+    public int getKind(int fold) {
+        return kinds.get(fold);
+    }
+}
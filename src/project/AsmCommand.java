@@ -1,7 +1,5 @@
 package project;
 
-import java.util.Map;
-
 public class AsmCommand {
     enum InstructionType {
         COMPRESSED_Q0,
@@ -24,7 +22,7 @@ public class AsmCommand {
     int inst;
     int address;
     String tag;
-    Map<Integer, String> go;
+    LabelTable go;
 
     private static int getBitSubseq(int x, int l, int r) {
         return (x >> l) & ((1 << (r - l + 1)) - 1);
@@ -48,7 +46,7 @@ public class AsmCommand {
         return answer;
     }
 
-    AsmCommand(int inst, int pos, Map<Integer, String> go) {
+    AsmCommand(int inst, int pos, LabelTable go) {
         this.inst = inst;
         this.address = pos;
         this.tag = "";
@@ -93,7 +91,7 @@ public class AsmCommand {
         return null;
     }
 
-    private String xRegToAbi(int x) {
+    static String xRegToAbi(int x) {
         if (x >= 10 && x <= 17) {
             return "a" + (x - 10);
         }
@@ -125,7 +123,7 @@ public class AsmCommand {
         return "a" + (x - 2);
     }
 
-    private String toCsrRegister(int imm) {
+    static String toCsrRegister(int imm) {
         String name = switch (imm) {
             case 0xf11 -> "mvandorid";
             case 0xf12 -> "marchid";
@@ -469,7 +467,7 @@ public class AsmCommand {
             }
         }
         return String.format("%08x %10s: %s, %s, %s, %s\n",
-                address, tag, name, xRegToAbi(rs1), xRegToAbi(rs2), go.get(immediate + address));
+                address, tag, name, xRegToAbi(rs1), xRegToAbi(rs2), go.getNameAt(immediate + address));
 
     }
 
@@ -494,7 +492,7 @@ public class AsmCommand {
         int immediate = getJImmediate();
         int rd = getBitSubseq(inst, 7, 11);
         return String.format("%08x %10s: %s, %s, %s\n",
-                address, tag, "JAL", xRegToAbi(rd), go.get(immediate + address));
+                address, tag, "JAL", xRegToAbi(rd), go.getNameAt(immediate + address));
     }
 
     private String decodeQ0() {
@@ -541,21 +539,21 @@ public class AsmCommand {
             case 0b001: // JAL
                 int imm = getJalCompressedImmediate();
                 return String.format("%08x %10s: C.JAL %s\n",
-                        address, tag, go.get(address + imm));
+                        address, tag, go.getNameAt(address + imm));
             case 0b101: // J
                 imm = getJalCompressedImmediate();
                 return String.format("%08x %10s: C.J %s\n",
-                        address, tag, go.get(address + imm));
+                        address, tag, go.getNameAt(address + imm));
             case 0b110: // BEQZ
                 int rs1 = getBitSubseq(inst, 7, 9);
                 imm = getBranchCompressedImmediate();
                 return String.format("%08x %10s: C.BEQZ %s, %s\n",
-                        address, tag, xRegToC(rs1), go.get(imm + address));
+                        address, tag, xRegToC(rs1), go.getNameAt(imm + address));
             case 0b111: // BNEZ
                 rs1 = getBitSubseq(inst, 7, 9);
                 imm = getBranchCompressedImmediate();
                 return String.format("%08x %10s: C.BNEZ %s, %s\n",
-                        address, tag, xRegToC(rs1), go.get(imm + address));
+                        address, tag, xRegToC(rs1), go.getNameAt(imm + address));
             case 0b010: // LI
                 imm = getBitSubseq(inst, 2, 6) | (getBit(inst, 12) << 5);
                 imm = signExtend(imm, 5);
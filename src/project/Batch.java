@@ -0,0 +1,202 @@
+package project;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Disassembles many files in one JVM. Every file gets its own (virtual, when available) thread
+// for reading and writing, while parsing is limited to one file per core.
+public class Batch {
+    private final Options options;
+    private final Path outputDirectory;
+    private final Metrics metrics;
+    private final Semaphore cpu = new Semaphore(Runtime.getRuntime().availableProcessors());
+
+    private static final class Input {
+        final Path path;
+        final Path relative;
+
+        Input(Path path, Path relative) {
+            this.path = path;
+            this.relative = relative;
+        }
+    }
+
+    private static final class Result {
+        final Input input;
+        final long nanos;
+        final String error;
+
+        Result(Input input, long nanos, String error) {
+            this.input = input;
+            this.nanos = nanos;
+            this.error = error;
+        }
+    }
+
+    // Every file adds to metrics, which may be null
+    Batch(Options options, Metrics metrics) {
+        this.options = options;
+        this.outputDirectory = Paths.get(options.output);
+        this.metrics = metrics;
+    }
+
+    private static boolean isGlob(String segment) {
+        return segment.chars().anyMatch(c -> c == '*' || c == '?' || c == '[' || c == '{');
+    }
+
+    private static List<Input> walk(Path base, PathMatcher matcher) throws IOException {
+        try (Stream<Path> files = Files.walk(base)) {
+            return files.filter(Files::isRegularFile)
+                    .filter(file -> matcher == null || matcher.matches(base.relativize(file)))
+                    .sorted()
+                    .map(file -> new Input(file, base.relativize(file)))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    static List<Input> collectInputs(String spec) throws IOException {
+        if (spec.startsWith("@")) {
+            List<Input> inputs = new ArrayList<>();
+            for (String line : Files.readAllLines(Paths.get(spec.substring(1)))) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                Path path = Paths.get(line).normalize();
+                inputs.add(new Input(path, outputPath(path)));
+            }
+            // Outputs of different inputs must not overwrite each other
+            Set<Path> outputs = new HashSet<>();
+            for (Input input : inputs) {
+                Assert.ensure(outputs.add(input.relative), "%s is listed more than once or maps to the same output",
+                        input.path);
+            }
+            return inputs;
+        }
+        Path path = Paths.get(spec);
+        if (Files.isDirectory(path)) {
+            return walk(path, null);
+        }
+        // Glob: everything before the first segment with a wildcard is the directory to walk
+        Path base = path.getRoot() == null ? Paths.get("") : path.getRoot();
+        int i = 0;
+        while (i < path.getNameCount() && !isGlob(path.getName(i).toString())) {
+            base = base.resolve(path.getName(i));
+            i++;
+        }
+        Assert.ensure(i < path.getNameCount(), "%s is neither a directory, a glob nor a @manifest", spec);
+        String pattern = path.subpath(i, path.getNameCount()).toString().replace('\\', '/');
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+        return walk(base.toString().isEmpty() ? Paths.get(".") : base, matcher);
+    }
+
+    // Absolute paths keep everything after the root, paths that leave the working directory
+    // keep everything after the leading ".." segments
+    private static Path outputPath(Path path) {
+        if (path.isAbsolute()) {
+            return path.getRoot().relativize(path);
+        }
+        int i = 0;
+        while (i < path.getNameCount() - 1 && path.getName(i).toString().equals("..")) {
+            i++;
+        }
+        return path.subpath(i, path.getNameCount());
+    }
+
+    private static ExecutorService newIoExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            // No virtual threads before Java 21
+            return Executors.newFixedThreadPool(4 * Runtime.getRuntime().availableProcessors());
+        }
+    }
+
+    private Result process(Input input) {
+        long start = System.nanoTime();
+        try {
+            ElfParser parser = Main.createParser(ElfReader.map(input.path), options, metrics);
+            Path output = outputDirectory.resolve(input.relative + ".txt");
+            if (output.getParent() != null) {
+                Files.createDirectories(output.getParent());
+            }
+            try (PrintWriter out = Main.openOutput(output)) {
+                cpu.acquire();
+                try {
+                    parser.parse(out);
+                } finally {
+                    cpu.release();
+                }
+            }
+            return new Result(input, System.nanoTime() - start, null);
+        } catch (IOException e) {
+            return new Result(input, System.nanoTime() - start, "couldn't read or write " + e.getMessage());
+        } catch (AssertionError e) {
+            return new Result(input, System.nanoTime() - start, e.getMessage());
+        } catch (RuntimeException e) {
+            // Malformed files can fail in ways no check anticipated, that file fails and the rest go on
+            return new Result(input, System.nanoTime() - start, e.toString());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new Result(input, System.nanoTime() - start, "interrupted");
+        }
+    }
+
+    public boolean run() {
+        List<Input> inputs;
+        try {
+            inputs = collectInputs(options.input);
+        } catch (IOException | AssertionError e) {
+            System.err.println("Couldn't collect input files");
+            System.err.println(e.getMessage());
+            return false;
+        }
+
+        long start = System.nanoTime();
+        long totalNanos = 0;
+        int failed = 0;
+        ExecutorService io = newIoExecutor();
+        try {
+            List<Future<Result>> results = new ArrayList<>();
+            for (Input input : inputs) {
+                results.add(io.submit(() -> process(input)));
+            }
+            for (Future<Result> future : results) {
+                Result result = future.get();
+                totalNanos += result.nanos;
+                if (result.error == null) {
+                    System.out.printf("%10.2f ms  %s%n", result.nanos / 1e6, result.input.path);
+                } else {
+                    failed++;
+                    System.out.printf("%10.2f ms  %s FAILED: %s%n", result.nanos / 1e6, result.input.path, result.error);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            throw new AssertionError("Batch task failed: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            io.shutdown();
+        }
+        System.out.printf("%d files, %d failed, %.2f ms wall, %.2f ms summed over files%n",
+                inputs.size(), failed, (System.nanoTime() - start) / 1e6, totalNanos / 1e6);
+        return failed == 0;
+    }
+}
@@ -0,0 +1,238 @@
+package project;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Direct calls between FUNC symbols: JAL with a link register and C.JAL to anywhere inside a function,
+// plus tail calls, which are JAL zero/C.J to another function's first instruction. Functions are
+// scanned independently on a fork/join pool, the callees of function f are callees[offsets[f]..offsets[f + 1])
+public class CallGraph {
+    private static final int FUNCTIONS_PER_TASK = 64;
+
+    private final InstructionStore text;
+    private final InstructionSet isa;
+    private final int[] starts; // Sorted as unsigned addresses, one per distinct FUNC address
+    private final long[] ends; // Unsigned, exclusive
+    private final String[] names;
+    private final int[] offsets;
+    private final int[] callees;
+    private final boolean wide;
+    private final long window; // Upper 32 bits of every function address
+
+    public CallGraph(InstructionStore text, ElfModel model, ForkJoinPool pool) {
+        this.text = text;
+        this.isa = model.getInstructionSet();
+        this.wide = model.getHeader().is64();
+        this.window = model.getCodeWindow();
+        List<Symbol> symbols = model.getSymbols();
+        long[] keys = new long[symbols.size()];
+        int n = 0;
+        for (int i = 0; i < symbols.size(); i++) {
+            Symbol symbol = symbols.get(i);
+            // Defined function in the 4 GB window of the code, starts keep the low 32 bits
+            if (symbol.getType() == 2 && symbol.getShndx() != 0 && model.isInCodeWindow(symbol.getFullValue())) {
+                keys[n++] = (long) (symbol.getValue() ^ Integer.MIN_VALUE) << 32 | i;
+            }
+        }
+        Arrays.sort(keys, 0, n);
+
+        IntList unique = new IntList(n);
+        for (int i = 0; i < n; i++) {
+            if (i == 0 || keys[i] >>> 32 != keys[i - 1] >>> 32) {
+                unique.add((int) keys[i]); // Aliases keep the first symbol
+            }
+        }
+        int count = unique.size();
+        long textEnd = text.size() == 0 ? 0
+                : Integer.toUnsignedLong(text.getAddress(text.size() - 1)) + text.getLength(text.size() - 1);
+        starts = new int[count];
+        ends = new long[count];
+        names = new String[count];
+        for (int f = 0; f < count; f++) {
+            Symbol symbol = symbols.get(unique.get(f));
+            starts[f] = symbol.getValue();
+            names[f] = model.getSymbolName(symbol);
+        }
+        for (int f = 0; f < count; f++) {
+            Symbol symbol = symbols.get(unique.get(f));
+            long start = Integer.toUnsignedLong(starts[f]);
+            ends[f] = symbol.getSize() != 0 ? start + Integer.toUnsignedLong(symbol.getSize())
+                    : f + 1 < count ? Integer.toUnsignedLong(starts[f + 1]) : Math.max(start, textEnd);
+        }
+
+        int[][] perFunction = new int[count][];
+        if (count > 0) {
+            pool.invoke(new ScanTask(perFunction, 0, count));
+        }
+        offsets = new int[count + 1];
+        for (int f = 0; f < count; f++) {
+            offsets[f + 1] = offsets[f] + perFunction[f].length;
+        }
+        callees = new int[offsets[count]];
+        for (int f = 0; f < count; f++) {
+            System.arraycopy(perFunction[f], 0, callees, offsets[f], perFunction[f].length);
+        }
+    }
+
+    // Function whose range contains address, or -1
+    private int functionAt(int address) {
+        int key = address ^ Integer.MIN_VALUE;
+        int l = 0;
+        int r = starts.length;
+        while (l < r) {
+            int m = (l + r) >>> 1;
+            if ((starts[m] ^ Integer.MIN_VALUE) <= key) {
+                l = m + 1;
+            } else {
+                r = m;
+            }
+        }
+        int f = l - 1;
+        return f >= 0 && Integer.toUnsignedLong(address) < ends[f] ? f : -1;
+    }
+
+    private int[] scan(int f, IntList found, DecodedInstruction cmd) {
+        found.clear();
+        for (int i = text.ceilingIndex(starts[f]);
+             i < text.size() && Integer.toUnsignedLong(text.getAddress(i)) < ends[f]; i++) {
+            int inst = text.getRaw(i);
+            if (!isa.hasTarget(inst)) {
+                continue;
+            }
+            isa.decode(inst, text.getAddress(i), cmd);
+            boolean call = cmd.mnemonic == Mnemonic.C_JAL || cmd.mnemonic == Mnemonic.JAL && cmd.rd != 0;
+            boolean jump = cmd.mnemonic == Mnemonic.C_J || cmd.mnemonic == Mnemonic.JAL && cmd.rd == 0;
+            if (!call && !jump) {
+                continue;
+            }
+            int callee = functionAt(cmd.getTarget());
+            if (callee >= 0 && (call || callee != f && starts[callee] == cmd.getTarget())) {
+                found.add(callee);
+            }
+        }
+        int[] result = found.toArray();
+        Arrays.sort(result);
+        int size = 0;
+        for (int i = 0; i < result.length; i++) {
+            if (i == 0 || result[i] != result[i - 1]) {
+                result[size++] = result[i];
+            }
+        }
+        return size == result.length ? result : Arrays.copyOf(result, size);
+    }
+
+    @SuppressWarnings("serial") // Fork/join tasks are never serialized
+    private class ScanTask extends RecursiveAction {
+        private final int[][] perFunction;
+        private final int l;
+        private final int r;
+
+        ScanTask(int[][] perFunction, int l, int r) {
+            this.perFunction = perFunction;
+            this.l = l;
+            this.r = r;
+        }
+
+        @Override
+        protected void compute() {
+            if (r - l <= FUNCTIONS_PER_TASK) {
+                IntList found = new IntList();
+                DecodedInstruction cmd = new DecodedInstruction();
+                for (int f = l; f < r; f++) {
+                    perFunction[f] = scan(f, found, cmd);
+                }
+                return;
+            }
+            int m = (l + r) >>> 1;
+            invokeAll(new ScanTask(perFunction, l, m), new ScanTask(perFunction, m, r));
+        }
+    }
+
+    public int getFunctionCount() {
+        return starts.length;
+    }
+
+    public int getEdgeCount() {
+        return callees.length;
+    }
+
+    public int getFunctionAddress(int function) {
+        return starts[function];
+    }
+
+    public long getFullFunctionAddress(int function) {
+        return window << 32 | Integer.toUnsignedLong(starts[function]);
+    }
+
+    public String getFunctionName(int function) {
+        return names[function];
+    }
+
+    public int getCalleeCount(int function) {
+        return offsets[function + 1] - offsets[function];
+    }
+
+    public int getCallee(int function, int i) {
+        return callees[offsets[function] + i];
+    }
+
+    private static String quote(String name) {
+        return '"' + name.replace("\\", "\\\\").replace("\"", "\\\"") + '"';
+    }
+
+    // Functions without calls in either direction are left out
+    public void writeDot(PrintWriter out) {
+        boolean[] used = new boolean[starts.length];
+        for (int f = 0; f < starts.length; f++) {
+            used[f] |= getCalleeCount(f) > 0;
+            for (int i = offsets[f]; i < offsets[f + 1]; i++) {
+                used[callees[i]] = true;
+            }
+        }
+        out.print("digraph calls {\n");
+        for (int f = 0; f < starts.length; f++) {
+            if (used[f]) {
+                out.print(String.format("    f%d [label=%s];\n", f, quote(names[f])));
+            }
+        }
+        for (int f = 0; f < starts.length; f++) {
+            for (int i = offsets[f]; i < offsets[f + 1]; i++) {
+                out.print("    f" + f + " -> f" + callees[i] + ";\n");
+            }
+        }
+        out.print("}\n");
+    }
+
+    // Little-endian edge count, then a (caller address, callee address) pair of 32-bit words per edge
+    // Addresses are 8 bytes in ELF64 files, 4 in ELF32 ones
+    public void writeEdges(Path path) throws IOException {
+        int size = wide ? 8 : 4;
+        ByteBuffer out = ByteBuffer.allocate(4 + 2 * size * callees.length).order(ByteOrder.LITTLE_ENDIAN);
+        out.putInt(callees.length);
+        for (int f = 0; f < starts.length; f++) {
+            for (int i = offsets[f]; i < offsets[f + 1]; i++) {
+                if (wide) {
+                    out.putLong(getFullFunctionAddress(f)).putLong(getFullFunctionAddress(callees[i]));
+                } else {
+                    out.putInt(starts[f]).putInt(starts[callees[i]]);
+                }
+            }
+        }
+        out.flip();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package project;
+
+import java.util.Arrays;
+
+// Basic blocks of a decoded .text with successor and predecessor edges in CSR form: the edges of
+// block b are edges[offsets[b]..offsets[b + 1]). Blocks end at branches, JAL/C.J with rd = zero,
+// JALR, C.JR and C.JALR. Direct calls (JAL with a link register, C.JAL) stay inside their block,
+// their targets are function entries and belong to the call graph.
+// Instructions are addressed by their index in the InstructionStore the graph was built from.
+public class ControlFlowGraph {
+    private static final int NORMAL = 0;
+    private static final int CONDITIONAL = 1; // Target and fall through
+    private static final int JUMP = 2; // Target only
+    private static final int INDIRECT = 3; // No known successor
+    private static final int INDIRECT_CALL = 4; // Returns, so falls through
+
+    private final InstructionStore text;
+    private final InstructionSet isa;
+    private final int base;
+    private final int span; // Bytes from base to the end of the last instruction
+
+    private final int[] blockStarts; // First instruction of every block, plus text.size() at the end
+    private final int[] successorOffsets;
+    private final int[] successors;
+    private final int[] predecessorOffsets;
+    private final int[] predecessors;
+
+    private final int[] functionAddresses;
+    private final int[] functionBlocks; // First block of every function, plus the block count at the end
+
+    public ControlFlowGraph(InstructionStore text, int[] functionStarts) {
+        this(text, functionStarts, Decoder.XLEN32);
+    }
+
+    public ControlFlowGraph(InstructionStore text, int[] functionStarts, InstructionSet isa) {
+        this.text = text;
+        this.isa = isa;
+        int n = text.size();
+        base = n == 0 ? 0 : text.getAddress(0);
+        span = n == 0 ? 0 : text.getAddress(n - 1) + text.getLength(n - 1) - base;
+        int halves = (span >>> 1) + 1;
+
+        // Bit per halfword where an instruction starts, so that targets into the middle of one are ignored
+        long[] starts = new long[(halves + 63) >>> 6];
+        for (int i = 0; i < n; i++) {
+            set(starts, (text.getAddress(i) - base) >>> 1);
+        }
+
+        long[] leaders = new long[starts.length];
+        if (n > 0) {
+            set(leaders, 0);
+        }
+        IntList functions = new IntList();
+        for (int address : functionStarts) {
+            int half = half(address);
+            if (half >= 0 && get(starts, half)) {
+                set(leaders, half);
+                functions.add(half);
+            }
+        }
+        DecodedInstruction cmd = new DecodedInstruction();
+        for (int i = 0; i < n; i++) {
+            int kind = mayEndBlock(isa, text.getRaw(i)) ? classify(i, cmd) : NORMAL;
+            if (kind == NORMAL) {
+                continue;
+            }
+            if (kind == CONDITIONAL || kind == JUMP) {
+                int target = half(cmd.getTarget());
+                if (target >= 0 && get(starts, target)) {
+                    set(leaders, target);
+                }
+            }
+            if (i + 1 < n) {
+                set(leaders, (text.getAddress(i + 1) - base) >>> 1);
+            }
+        }
+
+        // Rank of a leader bit is its block number
+        int[] rank = new int[leaders.length + 1];
+        for (int w = 0; w < leaders.length; w++) {
+            rank[w + 1] = rank[w] + Long.bitCount(leaders[w]);
+        }
+        int blocks = rank[leaders.length];
+        blockStarts = new int[blocks + 1];
+        for (int i = 0, b = 0; i < n; i++) {
+            if (get(leaders, (text.getAddress(i) - base) >>> 1)) {
+                blockStarts[b++] = i;
+            }
+        }
+        blockStarts[blocks] = n;
+
+        // At most a target and a fall through per block
+        successorOffsets = new int[blocks + 1];
+        int[] successors = new int[2 * blocks];
+        int[] predecessorCounts = new int[blocks + 1];
+        int e = 0;
+        for (int b = 0; b < blocks; b++) {
+            successorOffsets[b] = e;
+            int last = blockStarts[b + 1] - 1;
+            int kind = classify(last, cmd);
+            if (kind == CONDITIONAL || kind == JUMP) {
+                int target = half(cmd.getTarget());
+                if (target >= 0 && get(starts, target)) {
+                    successors[e++] = blockOf(rank, leaders, target);
+                }
+            }
+            if (b + 1 < blocks && kind != JUMP && kind != INDIRECT) {
+                successors[e++] = b + 1; // Falls through
+            }
+        }
+        successorOffsets[blocks] = e;
+        this.successors = Arrays.copyOf(successors, e);
+        for (int i = 0; i < e; i++) {
+            predecessorCounts[successors[i] + 1]++;
+        }
+        predecessorOffsets = new int[blocks + 1];
+        for (int b = 0; b < blocks; b++) {
+            predecessorOffsets[b + 1] = predecessorOffsets[b] + predecessorCounts[b + 1];
+        }
+        predecessors = new int[e];
+        int[] fill = Arrays.copyOf(predecessorOffsets, blocks);
+        for (int b = 0; b < blocks; b++) {
+            for (int i = successorOffsets[b]; i < successorOffsets[b + 1]; i++) {
+                predecessors[fill[successors[i]]++] = b;
+            }
+        }
+
+        int[] sortedFunctions = functions.toArray();
+        Arrays.sort(sortedFunctions);
+        int count = 0;
+        for (int i = 0; i < sortedFunctions.length; i++) {
+            if (i == 0 || sortedFunctions[i] != sortedFunctions[i - 1]) {
+                sortedFunctions[count++] = sortedFunctions[i];
+            }
+        }
+        functionAddresses = new int[count];
+        functionBlocks = new int[count + 1];
+        for (int f = 0; f < count; f++) {
+            functionAddresses[f] = base + (sortedFunctions[f] << 1);
+            functionBlocks[f] = blockOf(rank, leaders, sortedFunctions[f]);
+        }
+        functionBlocks[count] = blocks;
+    }
+
+    private static void set(long[] bits, int i) {
+        bits[i >>> 6] |= 1L << i;
+    }
+
+    private static boolean get(long[] bits, int i) {
+        return (bits[i >>> 6] & (1L << i)) != 0;
+    }
+
+    private static int blockOf(int[] rank, long[] leaders, int half) {
+        return rank[half >>> 6] + Long.bitCount(leaders[half >>> 6] & ((1L << half) - 1));
+    }
+
+    // Halfword number of an address inside the graph, or -1
+    private int half(int address) {
+        int relative = address - base;
+        return Integer.compareUnsigned(relative, span) < 0 && (relative & 1) == 0 ? relative >>> 1 : -1;
+    }
+
+    // Cheap filter before decoding: jumps, branches, JALR and the C.JR/C.MV/C.JALR/C.ADD group
+    private static boolean mayEndBlock(InstructionSet isa, int inst) {
+        if ((inst & 0b11) == 0b10) {
+            return ((inst >>> 13) & 0x7) == 0b100;
+        }
+        return isa.hasTarget(inst) || (inst & 0x7f) == 0b1100111;
+    }
+
+    private int classify(int index, DecodedInstruction cmd) {
+        isa.decode(text.getRaw(index), text.getAddress(index), cmd);
+        return switch (cmd.mnemonic) {
+            case JAL -> cmd.rd == 0 ? JUMP : NORMAL;
+            case C_J -> JUMP;
+            case C_JAL -> NORMAL;
+            case JALR -> cmd.rd == 0 ? INDIRECT : INDIRECT_CALL;
+            case C_JR -> INDIRECT;
+            case C_JALR -> INDIRECT_CALL;
+            default -> cmd.hasTarget ? CONDITIONAL : NORMAL;
+        };
+    }
+
+    public int getBlockCount() {
+        return blockStarts.length - 1;
+    }
+
+    public int getEdgeCount() {
+        return successors.length;
+    }
+
+    // First instruction of the block, an index into the InstructionStore
+    public int getBlockStart(int block) {
+        return blockStarts[block];
+    }
+
+    // One past the last instruction of the block
+    public int getBlockEnd(int block) {
+        return blockStarts[block + 1];
+    }
+
+    public int getBlockAddress(int block) {
+        return text.getAddress(blockStarts[block]);
+    }
+
+    // Block containing the instruction at address, or -1
+    public int getBlockAt(int address) {
+        int index = text.indexOf(address);
+        if (index < 0) {
+            return -1;
+        }
+        int block = Arrays.binarySearch(blockStarts, index);
+        return block >= 0 ? block : -block - 2;
+    }
+
+    public int getSuccessorCount(int block) {
+        return successorOffsets[block + 1] - successorOffsets[block];
+    }
+
+    public int getSuccessor(int block, int i) {
+        return successors[successorOffsets[block] + i];
+    }
+
+    public int getPredecessorCount(int block) {
+        return predecessorOffsets[block + 1] - predecessorOffsets[block];
+    }
+
+    public int getPredecessor(int block, int i) {
+        return predecessors[predecessorOffsets[block] + i];
+    }
+
+    // Raw CSR arrays for analyses that walk the whole graph, callers must not change them
+    public int[] getSuccessorOffsets() {
+        return successorOffsets;
+    }
+
+    public int[] getSuccessors() {
+        return successors;
+    }
+
+    public int[] getPredecessorOffsets() {
+        return predecessorOffsets;
+    }
+
+    public int[] getPredecessors() {
+        return predecessors;
+    }
+
+    // Functions are the given starts that landed on an instruction, sorted by address. A function owns
+    // the blocks up to the next function, edges leaving that range are jumps to other functions
+    public int getFunctionCount() {
+        return functionAddresses.length;
+    }
+
+    public int getFunctionAddress(int function) {
+        return functionAddresses[function];
+    }
+
+    public int getFunctionFirstBlock(int function) {
+        return functionBlocks[function];
+    }
+
+    public int getFunctionEndBlock(int function) {
+        return functionBlocks[function + 1];
+    }
+
+    // Function owning the block, or -1 for blocks before the first function
+    public int getFunctionOf(int block) {
+        int f = Arrays.binarySearch(functionBlocks, 0, functionAddresses.length, block);
+        return f >= 0 ? f : -f - 2;
+    }
+}
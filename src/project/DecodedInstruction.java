@@ -0,0 +1,78 @@
+package project;
+
+public final class DecodedInstruction {
+    // Operand layout of the textual form, unknown encodings keep the layout of their opcode group
+    public enum Format {
+        NONE,         // N
+        REG_REG_REG,  // N, rd, rs1, rs2
+        REG_REG_IMM,  // N, rd, rs1, imm
+        LOAD,         // N rd, imm(rs1)
+        STORE,        // N, rs2, imm(rs1)
+        STORE_C,      // N rs2, imm(rs1)
+        CSR,          // N, rd, csr, rs1
+        CSR_IMM,      // N, rd, csr, uimm
+        BRANCH,       // N, rs1, rs2, target
+        UPPER,        // N, rd, imm
+        JUMP_LINK,    // N, rd, target
+        C_TARGET,     // N target
+        C_BRANCH,     // N rs1, target
+        C_REG_IMM,    // N rd, imm
+        C_REG_REG_IMM,// N rd, rs1, imm
+        C_REG_REG,    // N rd, rs2
+        C_REG_REG_OP, // N, rd, rs2
+        C_REG;        // N rs1
+
+        static final Format[] VALUES = values();
+    }
+
+    Mnemonic mnemonic;
+    Format format;
+    int rd;
+    int rs1;
+    int rs2;
+    int imm;
+    int length;
+    int address;
+    boolean hasTarget;
+
+    public Mnemonic getMnemonic() {
+        return mnemonic;
+    }
+
+    public Format getFormat() {
+        return format;
+    }
+
+    public int getRd() {
+        return rd;
+    }
+
+    public int getRs1() {
+        return rs1;
+    }
+
+    public int getRs2() {
+        return rs2;
+    }
+
+    public int getImmediate() {
+        return imm;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public int getAddress() {
+        return address;
+    }
+
+    public boolean hasTarget() {
+        return hasTarget;
+    }
+
+    // Same targets as AsmCommand.getJumpAddress: JAL, branches, C.J, C.JAL, C.BEQZ and C.BNEZ
+    public int getTarget() {
+        return address + imm;
+    }
+}
@@ -0,0 +1,428 @@
+package project;
+
+import project.DecodedInstruction.Format;
+
+public final class Decoder {
+    private static final int OP_LUI = 0b0110111;
+    private static final int OP_AUIPC = 0b0010111;
+    private static final int OP_JAL = 0b1101111;
+    private static final int OP_JALR = 0b1100111;
+    private static final int OP_BRANCH = 0b1100011;
+    private static final int OP_LOAD = 0b0000011;
+    private static final int OP_STORE = 0b0100011;
+    private static final int OP_IMM = 0b0010011;
+    private static final int OP = 0b0110011;
+    private static final int OP_IMM_32 = 0b0011011;
+    private static final int OP_32 = 0b0111011;
+    private static final int OP_SYSTEM = 0b1110011;
+
+    private static final int IMM_NONE = 0;
+    private static final int IMM_I = 1;
+    private static final int IMM_SHAMT = 2;
+    private static final int IMM_S = 3;
+    private static final int IMM_B = 4;
+    private static final int IMM_U = 5;
+    private static final int IMM_J = 6;
+    private static final int IMM_SHAMT6 = 7; // RV64 shifts take a 6 bit amount
+
+    private static final int ANY = -1;
+
+    // Indexed by opcode[6:2] | funct3 | funct7: mnemonic, format, immediate kind and target flag
+    private static final char[] RV32 = new char[1 << 15];
+    // Every 16-bit encoding, fully decoded: mnemonic, format, registers, target flag and immediate
+    private static final long[] COMPRESSED = new long[1 << 16];
+
+    public static final InstructionSet XLEN32 = new Rv32();
+
+    static {
+        buildRv32Table(RV32);
+        buildCompressedTable(COMPRESSED, false);
+    }
+
+    private Decoder() {
+    }
+
+    private static final class Rv32 implements InstructionSet {
+        @Override
+        public int getXlen() {
+            return 32;
+        }
+
+        @Override
+        public void decode(int inst, int address, DecodedInstruction out) {
+            Decoder.decode(inst, address, out);
+        }
+
+        @Override
+        public boolean hasTarget(int inst) {
+            return Decoder.hasTarget(inst);
+        }
+    }
+
+    // Tables are only built when an RV64 file shows up
+    private static final class Rv64 implements InstructionSet {
+        private static final char[] RV64 = new char[1 << 15];
+        private static final long[] COMPRESSED64 = new long[1 << 16];
+        private static final Rv64 INSTANCE = new Rv64();
+
+        static {
+            buildRv32Table(RV64);
+            buildRv64Table(RV64);
+            buildCompressedTable(COMPRESSED64, true);
+        }
+
+        @Override
+        public int getXlen() {
+            return 64;
+        }
+
+        @Override
+        public void decode(int inst, int address, DecodedInstruction out) {
+            Decoder.decode(inst, address, out, RV64, COMPRESSED64);
+        }
+
+        // C.JAL is C.ADDIW on RV64
+        @Override
+        public boolean hasTarget(int inst) {
+            if ((inst & 0b11) != 0b11) {
+                return (inst & 0b11) == 0b01 && ((inst >>> 13) & 0x7) >= 0b101;
+            }
+            int opcode = inst & 0x7f;
+            return opcode == OP_JAL || opcode == OP_BRANCH;
+        }
+    }
+
+    public static InstructionSet xlen64() {
+        return Rv64.INSTANCE;
+    }
+
+    public static int getLength(int firstHalf) {
+        return (firstHalf & 0b11) == 0b11 ? 4 : 2;
+    }
+
+    // Same as decode(...).hasTarget without touching the tables: JAL, BRANCH, C.JAL, C.J, C.BEQZ, C.BNEZ
+    public static boolean hasTarget(int inst) {
+        if ((inst & 0b11) != 0b11) {
+            int funct = (inst >>> 13) & 0x7;
+            return (inst & 0b11) == 0b01 && (funct == 0b001 || funct >= 0b101);
+        }
+        int opcode = inst & 0x7f;
+        return opcode == OP_JAL || opcode == OP_BRANCH;
+    }
+
+    public static void decode(int inst, int address, DecodedInstruction out) {
+        decode(inst, address, out, RV32, COMPRESSED);
+    }
+
+    private static void decode(int inst, int address, DecodedInstruction out, char[] table, long[] compressed) {
+        out.address = address;
+        if ((inst & 0b11) != 0b11) {
+            long entry = compressed[inst & 0xffff];
+            int info = (int) entry;
+            out.mnemonic = Mnemonic.VALUES[info & 0x7f];
+            out.format = Format.VALUES[(info >>> 7) & 0x1f];
+            out.rd = (info >>> 12) & 0x1f;
+            out.rs1 = (info >>> 17) & 0x1f;
+            out.rs2 = (info >>> 22) & 0x1f;
+            out.hasTarget = (info & (1 << 27)) != 0;
+            out.imm = (int) (entry >>> 32);
+            out.length = 2;
+            return;
+        }
+        int opcode = inst & 0x7f;
+        int entry = table[(opcode >>> 2) << 10 | ((inst >>> 12) & 0x7) << 7 | (inst >>> 25)];
+        out.rd = (inst >>> 7) & 0x1f;
+        out.rs1 = (inst >>> 15) & 0x1f;
+        out.rs2 = (inst >>> 20) & 0x1f;
+        out.hasTarget = (entry & (1 << 15)) != 0;
+        out.imm = getImmediate(inst, (entry >>> 12) & 0x7);
+        out.length = 4;
+        if (opcode == OP_SYSTEM && out.rd == 0) {
+            out.mnemonic = out.imm == 0 ? Mnemonic.ECALL : out.imm == 1 ? Mnemonic.EBREAK : Mnemonic.UNKNOWN;
+            out.format = Format.NONE;
+            return;
+        }
+        out.mnemonic = Mnemonic.VALUES[entry & 0x7f];
+        out.format = Format.VALUES[(entry >>> 7) & 0x1f];
+    }
+
+    private static int getImmediate(int inst, int kind) {
+        return switch (kind) {
+            case IMM_I -> inst >> 20;
+            case IMM_SHAMT -> (inst >>> 20) & 0x1f;
+            case IMM_SHAMT6 -> (inst >>> 20) & 0x3f;
+            case IMM_S -> ((inst >> 25) << 5) | ((inst >>> 7) & 0x1f);
+            case IMM_B -> ((inst >> 31) << 12) | (((inst >>> 7) & 1) << 11)
+                    | (((inst >>> 25) & 0x3f) << 5) | (((inst >>> 8) & 0xf) << 1);
+            case IMM_U -> inst & 0xfffff000;
+            case IMM_J -> ((inst >> 31) << 20) | (inst & 0xff000)
+                    | (((inst >>> 20) & 1) << 11) | (((inst >>> 21) & 0x3ff) << 1);
+            default -> 0;
+        };
+    }
+
+    private static void put(char[] table, int opcode, int funct3, int funct7, Mnemonic mnemonic, Format format,
+                            int immKind) {
+        for (int f3 = 0; f3 < 8; f3++) {
+            for (int f7 = 0; f7 < 128; f7++) {
+                if ((funct3 == ANY || funct3 == f3) && (funct7 == ANY || funct7 == f7)) {
+                    boolean target = opcode == OP_JAL || opcode == OP_BRANCH;
+                    table[(opcode >>> 2) << 10 | f3 << 7 | f7] = (char) (mnemonic.ordinal()
+                            | format.ordinal() << 7 | immKind << 12 | (target ? 1 << 15 : 0));
+                }
+            }
+        }
+    }
+
+    private static void buildRv32Table(char[] table) {
+        for (int opcode = 0b11; opcode < 128; opcode += 4) {
+            put(table, opcode, ANY, ANY, Mnemonic.UNKNOWN, Format.NONE, IMM_NONE);
+        }
+        put(table, OP_LUI, ANY, ANY, Mnemonic.LUI, Format.UPPER, IMM_U);
+        put(table, OP_AUIPC, ANY, ANY, Mnemonic.AUIPC, Format.UPPER, IMM_U);
+        put(table, OP_JAL, ANY, ANY, Mnemonic.JAL, Format.JUMP_LINK, IMM_J);
+        put(table, OP_JALR, ANY, ANY, Mnemonic.JALR, Format.LOAD, IMM_I);
+
+        put(table, OP_BRANCH, ANY, ANY, Mnemonic.UNKNOWN, Format.BRANCH, IMM_B);
+        put(table, OP_BRANCH, 0b000, ANY, Mnemonic.BEQ, Format.BRANCH, IMM_B);
+        put(table, OP_BRANCH, 0b001, ANY, Mnemonic.BNE, Format.BRANCH, IMM_B);
+        put(table, OP_BRANCH, 0b100, ANY, Mnemonic.BLT, Format.BRANCH, IMM_B);
+        put(table, OP_BRANCH, 0b101, ANY, Mnemonic.BGE, Format.BRANCH, IMM_B);
+        put(table, OP_BRANCH, 0b110, ANY, Mnemonic.BLTU, Format.BRANCH, IMM_B);
+        put(table, OP_BRANCH, 0b111, ANY, Mnemonic.BGEU, Format.BRANCH, IMM_B);
+
+        put(table, OP_LOAD, ANY, ANY, Mnemonic.UNKNOWN, Format.LOAD, IMM_I);
+        put(table, OP_LOAD, 0b000, ANY, Mnemonic.LB, Format.LOAD, IMM_I);
+        put(table, OP_LOAD, 0b001, ANY, Mnemonic.LH, Format.LOAD, IMM_I);
+        put(table, OP_LOAD, 0b010, ANY, Mnemonic.LW, Format.LOAD, IMM_I);
+        put(table, OP_LOAD, 0b100, ANY, Mnemonic.LBU, Format.LOAD, IMM_I);
+        put(table, OP_LOAD, 0b101, ANY, Mnemonic.LHU, Format.LOAD, IMM_I);
+
+        put(table, OP_STORE, ANY, ANY, Mnemonic.UNKNOWN, Format.STORE, IMM_S);
+        put(table, OP_STORE, 0b000, ANY, Mnemonic.SB, Format.STORE, IMM_S);
+        put(table, OP_STORE, 0b001, ANY, Mnemonic.SH, Format.STORE, IMM_S);
+        put(table, OP_STORE, 0b010, ANY, Mnemonic.SW, Format.STORE, IMM_S);
+
+        put(table, OP_IMM, ANY, ANY, Mnemonic.UNKNOWN, Format.REG_REG_IMM, IMM_I);
+        put(table, OP_IMM, 0b000, ANY, Mnemonic.ADDI, Format.REG_REG_IMM, IMM_I);
+        put(table, OP_IMM, 0b010, ANY, Mnemonic.SLTI, Format.REG_REG_IMM, IMM_I);
+        put(table, OP_IMM, 0b011, ANY, Mnemonic.SLTIU, Format.REG_REG_IMM, IMM_I);
+        put(table, OP_IMM, 0b100, ANY, Mnemonic.XORI, Format.REG_REG_IMM, IMM_I);
+        put(table, OP_IMM, 0b110, ANY, Mnemonic.ORI, Format.REG_REG_IMM, IMM_I);
+        put(table, OP_IMM, 0b111, ANY, Mnemonic.ANDI, Format.REG_REG_IMM, IMM_I);
+        put(table, OP_IMM, 0b001, ANY, Mnemonic.SLLI, Format.REG_REG_IMM, IMM_SHAMT);
+        put(table, OP_IMM, 0b101, ANY, Mnemonic.UNKNOWN, Format.REG_REG_IMM, IMM_SHAMT);
+        put(table, OP_IMM, 0b101, 0b0000000, Mnemonic.SRLI, Format.REG_REG_IMM, IMM_SHAMT);
+        put(table, OP_IMM, 0b101, 0b0100000, Mnemonic.SRAI, Format.REG_REG_IMM, IMM_SHAMT);
+
+        Mnemonic[] base = {Mnemonic.ADD, Mnemonic.SLL, Mnemonic.SLT, Mnemonic.SLTU,
+                Mnemonic.XOR, Mnemonic.SRL, Mnemonic.OR, Mnemonic.AND};
+        Mnemonic[] multiply = {Mnemonic.MUL, Mnemonic.MULH, Mnemonic.MULHSU, Mnemonic.MULHU,
+                Mnemonic.DIV, Mnemonic.DIVU, Mnemonic.REM, Mnemonic.REMU};
+        put(table, OP, ANY, ANY, Mnemonic.UNKNOWN, Format.REG_REG_REG, IMM_NONE);
+        for (int funct3 = 0; funct3 < 8; funct3++) {
+            put(table, OP, funct3, 0b0000000, base[funct3], Format.REG_REG_REG, IMM_NONE);
+            put(table, OP, funct3, 0b0000001, multiply[funct3], Format.REG_REG_REG, IMM_NONE); // RV32M
+        }
+        put(table, OP, 0b000, 0b0100000, Mnemonic.SUB, Format.REG_REG_REG, IMM_NONE);
+        put(table, OP, 0b101, 0b0100000, Mnemonic.SRA, Format.REG_REG_REG, IMM_NONE);
+
+        // rd == 0 encodings (ECALL, EBREAK) are resolved in decode
+        put(table, OP_SYSTEM, 0b000, ANY, Mnemonic.UNKNOWN, Format.CSR, IMM_I);
+        put(table, OP_SYSTEM, 0b001, ANY, Mnemonic.CSRRW, Format.CSR, IMM_I);
+        put(table, OP_SYSTEM, 0b010, ANY, Mnemonic.CSRRS, Format.CSR, IMM_I);
+        put(table, OP_SYSTEM, 0b011, ANY, Mnemonic.CSRRC, Format.CSR, IMM_I);
+        put(table, OP_SYSTEM, 0b100, ANY, Mnemonic.UNKNOWN, Format.CSR_IMM, IMM_I);
+        put(table, OP_SYSTEM, 0b101, ANY, Mnemonic.CSRRWI, Format.CSR_IMM, IMM_I);
+        put(table, OP_SYSTEM, 0b110, ANY, Mnemonic.CSRRSI, Format.CSR_IMM, IMM_I);
+        put(table, OP_SYSTEM, 0b111, ANY, Mnemonic.CSRRCI, Format.CSR_IMM, IMM_I);
+    }
+
+    private static void buildRv64Table(char[] table) {
+        put(table, OP_LOAD, 0b011, ANY, Mnemonic.LD, Format.LOAD, IMM_I);
+        put(table, OP_LOAD, 0b110, ANY, Mnemonic.LWU, Format.LOAD, IMM_I);
+        put(table, OP_STORE, 0b011, ANY, Mnemonic.SD, Format.STORE, IMM_S);
+
+        // shamt[5] takes the low bit of funct7
+        put(table, OP_IMM, 0b001, ANY, Mnemonic.UNKNOWN, Format.REG_REG_IMM, IMM_SHAMT6);
+        put(table, OP_IMM, 0b101, ANY, Mnemonic.UNKNOWN, Format.REG_REG_IMM, IMM_SHAMT6);
+        for (int shamt5 = 0; shamt5 < 2; shamt5++) {
+            put(table, OP_IMM, 0b001, shamt5, Mnemonic.SLLI, Format.REG_REG_IMM, IMM_SHAMT6);
+            put(table, OP_IMM, 0b101, shamt5, Mnemonic.SRLI, Format.REG_REG_IMM, IMM_SHAMT6);
+            put(table, OP_IMM, 0b101, 0b0100000 | shamt5, Mnemonic.SRAI, Format.REG_REG_IMM, IMM_SHAMT6);
+        }
+
+        put(table, OP_IMM_32, ANY, ANY, Mnemonic.UNKNOWN, Format.REG_REG_IMM, IMM_I);
+        put(table, OP_IMM_32, 0b000, ANY, Mnemonic.ADDIW, Format.REG_REG_IMM, IMM_I);
+        put(table, OP_IMM_32, 0b001, 0b0000000, Mnemonic.SLLIW, Format.REG_REG_IMM, IMM_SHAMT);
+        put(table, OP_IMM_32, 0b101, 0b0000000, Mnemonic.SRLIW, Format.REG_REG_IMM, IMM_SHAMT);
+        put(table, OP_IMM_32, 0b101, 0b0100000, Mnemonic.SRAIW, Format.REG_REG_IMM, IMM_SHAMT);
+
+        put(table, OP_32, ANY, ANY, Mnemonic.UNKNOWN, Format.REG_REG_REG, IMM_NONE);
+        put(table, OP_32, 0b000, 0b0000000, Mnemonic.ADDW, Format.REG_REG_REG, IMM_NONE);
+        put(table, OP_32, 0b000, 0b0100000, Mnemonic.SUBW, Format.REG_REG_REG, IMM_NONE);
+        put(table, OP_32, 0b001, 0b0000000, Mnemonic.SLLW, Format.REG_REG_REG, IMM_NONE);
+        put(table, OP_32, 0b101, 0b0000000, Mnemonic.SRLW, Format.REG_REG_REG, IMM_NONE);
+        put(table, OP_32, 0b101, 0b0100000, Mnemonic.SRAW, Format.REG_REG_REG, IMM_NONE);
+        put(table, OP_32, 0b000, 0b0000001, Mnemonic.MULW, Format.REG_REG_REG, IMM_NONE); // RV64M
+        put(table, OP_32, 0b100, 0b0000001, Mnemonic.DIVW, Format.REG_REG_REG, IMM_NONE);
+        put(table, OP_32, 0b101, 0b0000001, Mnemonic.DIVUW, Format.REG_REG_REG, IMM_NONE);
+        put(table, OP_32, 0b110, 0b0000001, Mnemonic.REMW, Format.REG_REG_REG, IMM_NONE);
+        put(table, OP_32, 0b111, 0b0000001, Mnemonic.REMUW, Format.REG_REG_REG, IMM_NONE);
+    }
+
+    private static void buildCompressedTable(long[] table, boolean rv64) {
+        for (int inst = 0; inst < table.length; inst++) {
+            if ((inst & 0b11) != 0b11) {
+                table[inst] = decodeCompressed(inst, rv64);
+            }
+        }
+    }
+
+    private static int getBitSubseq(int x, int l, int r) {
+        return (x >> l) & ((1 << (r - l + 1)) - 1);
+    }
+
+    private static int getBit(int x, int b) {
+        return (x >> b) & 1;
+    }
+
+    private static int signExtend(int x, int signBit) {
+        int len = 32 - signBit;
+        int mask = ((getBit(x, signBit) << len) - getBit(x, signBit)) << signBit;
+        return x | mask;
+    }
+
+    private static int reorder(int immediate, int... wherePut) {
+        int answer = 0;
+        for (int i = 0; i < wherePut.length; i++) {
+            answer |= getBit(immediate, i) << wherePut[i];
+        }
+        return answer;
+    }
+
+    private static long entry(Mnemonic mnemonic, Format format, int rd, int rs1, int rs2, int imm, boolean target) {
+        return mnemonic.ordinal() | format.ordinal() << 7 | rd << 12 | rs1 << 17 | rs2 << 22
+                | (target ? 1 << 27 : 0) | (long) imm << 32;
+    }
+
+    private static long entry(Mnemonic mnemonic, Format format, int rd, int imm) {
+        return entry(mnemonic, format, rd, 0, 0, imm, false);
+    }
+
+    private static long decodeCompressed(int inst, boolean rv64) {
+        int funct = getBitSubseq(inst, 13, 15);
+        return switch (inst & 0b11) {
+            case 0b00 -> decodeQ0(inst, funct, rv64);
+            case 0b01 -> decodeQ1(inst, funct, rv64);
+            default -> decodeQ2(inst, funct, rv64);
+        };
+    }
+
+    private static long decodeQ0(int inst, int funct, boolean rv64) {
+        if (inst == 0) {
+            return entry(Mnemonic.INVALID, Format.NONE, 0, 0);
+        }
+        int rd = getBitSubseq(inst, 2, 4) + 8;
+        int rs1 = getBitSubseq(inst, 7, 9) + 8;
+        int uimm = reorder(getBitSubseq(inst, 5, 6) | (getBitSubseq(inst, 10, 12) << 2), 6, 2, 3, 4, 5);
+        if (rv64 && (funct == 0b011 || funct == 0b111)) {
+            int duimm = reorder(getBitSubseq(inst, 5, 6) | (getBitSubseq(inst, 10, 12) << 2), 6, 7, 3, 4, 5);
+            return funct == 0b011
+                    ? entry(Mnemonic.C_LD, Format.LOAD, rd, rs1, 0, duimm, false)
+                    : entry(Mnemonic.C_SD, Format.STORE_C, 0, rs1, rd, duimm, false);
+        }
+        return switch (funct) {
+            case 0b000 -> entry(Mnemonic.C_ADDI4SPN, Format.C_REG_REG_IMM, rd, 2, 0,
+                    reorder(getBitSubseq(inst, 5, 12), 3, 2, 6, 7, 8, 9, 4, 5), false);
+            case 0b010 -> entry(Mnemonic.C_LW, Format.LOAD, rd, rs1, 0, uimm, false);
+            case 0b110 -> entry(Mnemonic.C_SW, Format.STORE_C, 0, rs1, rd, uimm, false);
+            default -> entry(Mnemonic.Q0_UNKNOWN, Format.NONE, 0, 0);
+        };
+    }
+
+    private static long decodeQ1(int inst, int funct, boolean rv64) {
+        int rd = getBitSubseq(inst, 7, 11);
+        int rdC = getBitSubseq(inst, 7, 9) + 8;
+        int rsC = getBitSubseq(inst, 2, 4) + 8;
+        int imm = getBitSubseq(inst, 2, 6) | (getBit(inst, 12) << 5);
+        int jalImm = signExtend(reorder(getBitSubseq(inst, 2, 12), 5, 1, 2, 3, 7, 6, 10, 8, 9, 4, 11), 11);
+        int branchImm = signExtend(reorder(getBitSubseq(inst, 2, 6) | (getBitSubseq(inst, 10, 12) << 5),
+                5, 1, 2, 6, 7, 3, 4, 8), 8);
+        if (rv64 && funct == 0b001) {
+            return entry(Mnemonic.C_ADDIW, Format.C_REG_IMM, rd, rd, 0, signExtend(imm, 5), false);
+        }
+        if (rv64 && funct == 0b100 && getBitSubseq(inst, 10, 12) == 0b111) {
+            return switch (getBitSubseq(inst, 5, 6)) {
+                case 0b00 -> entry(Mnemonic.C_SUBW, Format.C_REG_REG_OP, rdC, rdC, rsC, 0, false);
+                case 0b01 -> entry(Mnemonic.C_ADDW, Format.C_REG_REG_OP, rdC, rdC, rsC, 0, false);
+                default -> entry(Mnemonic.UNKNOWN, Format.NONE, 0, 0);
+            };
+        }
+        return switch (funct) {
+            case 0b000 -> getBitSubseq(inst, 2, 15) == 0
+                    ? entry(Mnemonic.C_NOP, Format.NONE, 0, 0)
+                    : entry(Mnemonic.C_ADDI, Format.C_REG_IMM, rd, rd, 0, signExtend(imm, 5), false);
+            case 0b001 -> entry(Mnemonic.C_JAL, Format.C_TARGET, 1, 0, 0, jalImm, true);
+            case 0b101 -> entry(Mnemonic.C_J, Format.C_TARGET, 0, 0, 0, jalImm, true);
+            case 0b110 -> entry(Mnemonic.C_BEQZ, Format.C_BRANCH, 0, rdC, 0, branchImm, true);
+            case 0b111 -> entry(Mnemonic.C_BNEZ, Format.C_BRANCH, 0, rdC, 0, branchImm, true);
+            case 0b010 -> entry(Mnemonic.C_LI, Format.C_REG_IMM, rd, signExtend(imm, 5));
+            case 0b011 -> rd == 2
+                    ? entry(Mnemonic.C_ADDI16SP, Format.C_REG_IMM, 2, 2, 0,
+                            signExtend(reorder(imm, 5, 7, 8, 6, 4, 9), 9), false)
+                    : entry(Mnemonic.C_LUI, Format.C_REG_IMM, rd, signExtend(imm, 5) << 12);
+            default -> switch (getBitSubseq(inst, 10, 11)) {
+                case 0b00 -> entry(Mnemonic.C_SRLI, Format.C_REG_IMM, rdC, rdC, 0, imm, false);
+                case 0b01 -> entry(Mnemonic.C_SRAI, Format.C_REG_IMM, rdC, rdC, 0, imm, false);
+                case 0b10 -> entry(Mnemonic.C_ANDI, Format.C_REG_IMM, rdC, rdC, 0, signExtend(imm, 5), false);
+                default -> {
+                    // Incorrect with RV64-128. SUBW/ADDW ignored
+                    Mnemonic name = switch (getBitSubseq(inst, 5, 6)) {
+                        case 0b00 -> Mnemonic.C_SUB;
+                        case 0b01 -> Mnemonic.C_XOR;
+                        case 0b10 -> Mnemonic.C_OR;
+                        default -> Mnemonic.C_AND;
+                    };
+                    yield entry(name, Format.C_REG_REG_OP, rdC, rdC, rsC, 0, false);
+                }
+            };
+        };
+    }
+
+    private static long decodeQ2(int inst, int funct, boolean rv64) {
+        int imm = getBitSubseq(inst, 2, 6) | (getBit(inst, 12) << 5);
+        int rd = getBitSubseq(inst, 7, 11);
+        int rs = getBitSubseq(inst, 2, 6);
+        if (rv64 && funct == 0b011) {
+            return entry(Mnemonic.C_LDSP, Format.LOAD, rd, 2, 0, reorder(imm, 6, 7, 8, 3, 4, 5), false);
+        }
+        if (rv64 && funct == 0b111) {
+            return entry(Mnemonic.C_SDSP, Format.STORE_C, 0, 2, rs,
+                    reorder(getBitSubseq(inst, 7, 12), 6, 7, 8, 3, 4, 5), false);
+        }
+        switch (funct) {
+            case 0b000:
+                return entry(Mnemonic.C_SLLI, Format.C_REG_IMM, rd, rd, 0, imm, false);
+            case 0b010:
+                return entry(Mnemonic.C_LWSP, Format.LOAD, rd, 2, 0, reorder(imm, 6, 7, 2, 3, 4, 5), false);
+            case 0b110:
+                return entry(Mnemonic.C_SWSP, Format.STORE_C, 0, 2, rs,
+                        reorder(getBitSubseq(inst, 7, 12), 6, 7, 2, 3, 4, 5), false);
+            case 0b100:
+                if (getBit(inst, 12) == 0) {
+                    return rs == 0
+                            ? entry(Mnemonic.C_JR, Format.C_REG, 0, rd, 0, 0, false)
+                            : entry(Mnemonic.C_MV, Format.C_REG_REG, rd, 0, rs, 0, false);
+                }
+                if (rd == 0 && rs == 0) {
+                    return entry(Mnemonic.C_EBREAK, Format.NONE, 0, 0);
+                }
+                return rs == 0
+                        ? entry(Mnemonic.C_JALR, Format.C_REG, 1, rd, 0, 0, false)
+                        : entry(Mnemonic.C_ADD, Format.C_REG_REG, rd, rd, rs, 0, false);
+            default: // FLDSP, LQSP, FLWSP, LDSP and so on
+                return entry(Mnemonic.Q2_UNKNOWN, Format.NONE, 0, 0);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package project;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+// Decoded .text and its labels stored on disk, one file per SHA-256 of everything readText depends on.
+// Entries are memory-mapped on load. The directory is kept under a size limit by dropping the least
+// recently used entries, where "used" is the file modification time.
+public class DisassemblyCache {
+    public static final long DEFAULT_LIMIT = 256L << 20;
+
+    private static final int MAGIC = 0x52564443; // "RVDC"
+    private static final int VERSION = 1;
+    private static final String SUFFIX = ".rvdc";
+    private static final long MAX_ENTRY_SIZE = Integer.MAX_VALUE - 8; // Largest buffer the VM hands out
+
+    private final Path directory;
+    private final long limit;
+
+    public static final class Entry {
+        public final InstructionStore store;
+        public final LabelTable labels;
+
+        Entry(InstructionStore store, LabelTable labels) {
+            this.store = store;
+            this.labels = labels;
+        }
+    }
+
+    public DisassemblyCache(Path directory, long limit) {
+        this.directory = directory;
+        this.limit = limit;
+    }
+
+    private static void update(MessageDigest digest, int value) {
+        digest.update(new byte[]{(byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value});
+    }
+
+    private static void update(MessageDigest digest, ElfData file, SectionHeader section, String what) {
+        update(digest, section.getAddress());
+        update(digest, section.getSh_size());
+        digest.update(file.slice(section.getSh_offset(), section.getSh_size(), what));
+    }
+
+    // Hex digest of .text with its address, .symtab and the string table its FUNC labels come from
+    public static String key(ElfModel model) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError("SHA-256 is not available", e);
+        }
+        update(digest, VERSION);
+        if (model.getHeader().is64()) {
+            // RV64 decodes some encodings differently, and addresses have a high half
+            update(digest, 64);
+            update(digest, (int) (model.getText().getFullAddress() >>> 32));
+        }
+        update(digest, model.getFile(), model.getText(), ".text");
+        if (model.getSymtab() != null) {
+            update(digest, model.getFile(), model.getSymtab(), ".symtab");
+            update(digest, model.getFile(), model.getStringTable().getSection(), ".strtab");
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+
+    private Path path(String key) {
+        return directory.resolve(key + SUFFIX);
+    }
+
+    // Null on a miss. Unreadable or corrupted entries count as misses and are removed
+    public Entry get(String key) {
+        Path path = path(key);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            Assert.ensure(in.remaining() >= 8 && in.getInt() == MAGIC && in.getInt() == VERSION,
+                    "%s is not a cache entry", path);
+            InstructionStore store = InstructionStore.readFrom(in);
+            LabelTable labels = LabelTable.readFrom(in);
+            Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+            return new Entry(store, labels);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | RuntimeException | AssertionError e) {
+            System.err.println("Dropping cache entry " + path + ": " + e.getMessage());
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException ignored) {
+                // Somebody else will try again
+            }
+            return null;
+        }
+    }
+
+    // Failing to save an entry doesn't fail the disassembly. Entries are written from one buffer, so
+    // stores too large for it aren't cached
+    public void put(String key, InstructionStore store, LabelTable labels) {
+        long size = 8 + store.serializedSize() + labels.serializedSize();
+        if (size > MAX_ENTRY_SIZE) {
+            System.err.println("Not caching " + path(key) + ": entry of " + size + " bytes is too large");
+            return;
+        }
+        ByteBuffer out = ByteBuffer.allocate((int) size);
+        out.putInt(MAGIC).putInt(VERSION);
+        store.writeTo(out);
+        labels.writeTo(out);
+        out.flip();
+        try {
+            Files.createDirectories(directory);
+            Path temporary = Files.createTempFile(directory, key, ".tmp");
+            try {
+                try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                    while (out.hasRemaining()) {
+                        channel.write(out);
+                    }
+                }
+                try {
+                    Files.move(temporary, path(key), StandardCopyOption.ATOMIC_MOVE,
+                            StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temporary, path(key), StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+            evict(path(key));
+        } catch (IOException e) {
+            System.err.println("Couldn't write cache entry " + path(key) + ": " + e.getMessage());
+        }
+    }
+
+    private static final class Candidate {
+        final Path path;
+        final long size;
+        final long modified;
+
+        Candidate(Path path, long size, long modified) {
+            this.path = path;
+            this.size = size;
+            this.modified = modified;
+        }
+    }
+
+    // Newest first, everything past the limit goes. The entry just written always stays
+    private void evict(Path keep) throws IOException {
+        List<Candidate> entries = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (file.getFileName().toString().endsWith(SUFFIX)) {
+                    try {
+                        entries.add(new Candidate(file, Files.size(file), Files.getLastModifiedTime(file).toMillis()));
+                    } catch (NoSuchFileException e) {
+                        // Evicted concurrently
+                    }
+                }
+            }
+        }
+        entries.sort(Comparator.comparingLong((Candidate c) -> c.modified).reversed());
+        long total = 0;
+        for (Candidate entry : entries) {
+            total += entry.size;
+            if (total > limit && !entry.path.equals(keep)) {
+                Files.deleteIfExists(entry.path);
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package project;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+public final class ElfData {
+    private final ByteBuffer buffer;
+
+    public ElfData(ByteBuffer buffer) {
+        this.buffer = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    public int size() {
+        return buffer.limit();
+    }
+
+    // Regions are validated once, so the reads below never format an error message
+    public void ensureRange(int pos, int len, String what) {
+        if (pos < 0 || len < 0 || pos > buffer.limit() - len) {
+            throw new AssertionError(String.format("Couldn't read %s. Pos is %s, len is %s but file size is %s",
+                    what, pos, len, buffer.limit()));
+        }
+    }
+
+    // Read-only view of a region, for bulk consumers such as digests
+    public ByteBuffer slice(int pos, int len, String what) {
+        ensureRange(pos, len, what);
+        return buffer.asReadOnlyBuffer().position(pos).limit(pos + len);
+    }
+
+    public byte getByte(int pos) {
+        return buffer.get(pos);
+    }
+
+    public int getUnsignedByte(int pos) {
+        return Byte.toUnsignedInt(buffer.get(pos));
+    }
+
+    public int getHalf(int pos) {
+        return Short.toUnsignedInt(buffer.getShort(pos));
+    }
+
+    public int getWord(int pos) {
+        return buffer.getInt(pos);
+    }
+
+    public long getLong(int pos) {
+        return buffer.getLong(pos);
+    }
+
+    // Whole RV32 word, or only the first half for a compressed instruction
+    public int getInstruction(int pos) {
+        int half = getHalf(pos);
+        return (half & 0x3) == 0x3 ? getWord(pos) : half;
+    }
+}
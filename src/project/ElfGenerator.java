@@ -0,0 +1,600 @@
+package project;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.SplittableRandom;
+
+// Builds RISC-V ELF32 or ELF64 executables of any size for benchmarks and tests. The .text consists
+// of valid RV32I, RV32M and RVC instructions (plus the RV64 forms for ELF64), branches and jumps
+// land on instruction starts and calls go to function symbols, so every mode of the disassembler
+// sees realistic input. Same settings and seed always give the same bytes.
+// The file is streamed out: memory stays at the last few thousand instructions plus the symbols,
+// whatever the size of .text. ElfReader maps at most 2 GB, larger files are for the format's limits.
+public class ElfGenerator {
+    private static final int ALU = 0;
+    private static final int MUL = 1;
+    private static final int COMPRESSED = 2;
+    private static final int BRANCH = 3;
+    private static final int CALL = 4;
+    private static final int C_BRANCH = 5;
+    private static final int C_JUMP = 6;
+
+    private static final int WINDOW = 2048; // Instructions kept around the current one, branches reach 512
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private long textSize = 1 << 20;
+    private double baseWeight = 0.45;
+    private double mulWeight = 0.05;
+    private double compressedWeight = 0.5;
+    private double branchDensity = 0.15;
+    private int symbolCount = 1024;
+    private int stringTableSize;
+    private long seed = 42;
+    private boolean wide;
+    private long baseAddress = 0x10000;
+
+    public static void main(String[] args) {
+        ElfGenerator generator = new ElfGenerator();
+        String output = null;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                switch (arg) {
+                    case "--text-size" -> generator.setTextSize(parseSize(value(args, ++i, arg)));
+                    case "--mix" -> {
+                        String[] mix = value(args, ++i, arg).split(",");
+                        Assert.ensure(mix.length == 3, "--mix needs <RV32I>,<RV32M>,<RVC>, got %s", args[i]);
+                        generator.setMix(parseDouble(mix[0]), parseDouble(mix[1]), parseDouble(mix[2]));
+                    }
+                    case "--branch-density" -> generator.setBranchDensity(parseDouble(value(args, ++i, arg)));
+                    case "--symbols" -> generator.setSymbolCount((int) parseSize(value(args, ++i, arg)));
+                    case "--string-table-size" -> generator.setStringTableSize((int) parseSize(value(args, ++i, arg)));
+                    case "--seed" -> generator.setSeed(parseSize(value(args, ++i, arg)));
+                    case "--base-address" -> generator.setBaseAddress(Long.decode(value(args, ++i, arg)));
+                    case "--wide" -> generator.setWide(true);
+                    default -> {
+                        Assert.ensure(!arg.startsWith("--") && output == null, "Unexpected argument %s", arg);
+                        output = arg;
+                    }
+                }
+            }
+            Assert.ensure(output != null, "Expected an output file");
+        } catch (AssertionError | NumberFormatException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: <output file> [--text-size <bytes>[k|M|G]] [--mix <RV32I>,<RV32M>,<RVC>] [--branch-density <0..1>]\n" +
+                    "       [--symbols <count>] [--string-table-size <bytes>] [--seed <n>] [--base-address <address>] [--wide]");
+            System.exit(1);
+            return;
+        }
+        try {
+            generator.generate(Paths.get(output));
+        } catch (AssertionError e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        } catch (IOException e) {
+            System.err.println("Problems with file");
+            System.exit(1);
+        }
+    }
+
+    private static String value(String[] args, int i, String option) {
+        Assert.ensure(i < args.length, "%s needs a value", option);
+        return args[i];
+    }
+
+    // Plain number or one with a k, M or G suffix (powers of 1024)
+    private static long parseSize(String size) {
+        int shift = switch (size.isEmpty() ? ' ' : size.charAt(size.length() - 1)) {
+            case 'k', 'K' -> 10;
+            case 'm', 'M' -> 20;
+            case 'g', 'G' -> 30;
+            default -> 0;
+        };
+        try {
+            return Long.parseLong(shift == 0 ? size : size.substring(0, size.length() - 1)) << shift;
+        } catch (NumberFormatException e) {
+            throw new AssertionError("Expected a number, got " + size);
+        }
+    }
+
+    private static double parseDouble(String value) {
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new AssertionError("Expected a number, got " + value);
+        }
+    }
+
+    // Rounded down to a multiple of 2
+    public void setTextSize(long textSize) {
+        Assert.ensure(textSize >= 2, "Text size must be at least 2 bytes, got %s", textSize);
+        this.textSize = textSize & ~1;
+    }
+
+    // Relative weights of RV32I, RV32M and RVC among instructions that are not branches
+    public void setMix(double base, double mul, double compressed) {
+        Assert.ensure(base >= 0 && mul >= 0 && compressed >= 0 && base + mul + compressed > 0,
+                "Instruction mix must be non-negative and not all zero, got %s/%s/%s", base, mul, compressed);
+        this.baseWeight = base;
+        this.mulWeight = mul;
+        this.compressedWeight = compressed;
+    }
+
+    // Fraction of instructions that are branches, jumps or calls
+    public void setBranchDensity(double branchDensity) {
+        Assert.ensure(branchDensity >= 0 && branchDensity <= 1, "Branch density must be in [0, 1], got %s",
+                branchDensity);
+        this.branchDensity = branchDensity;
+    }
+
+    // FUNC symbols, spread evenly over .text. Functions are at least 4 bytes apart
+    public void setSymbolCount(int symbolCount) {
+        Assert.ensure(symbolCount >= 1, "At least one symbol is needed, got %s", symbolCount);
+        this.symbolCount = symbolCount;
+    }
+
+    // Symbol names are padded until .strtab has at least this many bytes
+    public void setStringTableSize(int stringTableSize) {
+        this.stringTableSize = stringTableSize;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    // ELF64 with RV64 instructions in the mix
+    public void setWide(boolean wide) {
+        this.wide = wide;
+    }
+
+    // Address of the file's first byte, .text follows the ELF and program headers
+    public void setBaseAddress(long baseAddress) {
+        this.baseAddress = baseAddress;
+    }
+
+    // Whole file in memory, for inputs below 2 GB
+    public byte[] generate() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            generate(Channels.newChannel(out));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    public void generate(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            generate(channel);
+        } catch (AssertionError e) {
+            Files.deleteIfExists(path);
+            throw e;
+        }
+    }
+
+    // Lays out instructions one by one, the same way for the same seed. The generator runs it twice:
+    // once for the function starts and the instruction count, once again while writing .text, where it
+    // keeps the last WINDOW instructions so branches can reach ahead and back
+    private final class Layout {
+        private final SplittableRandom random = new SplittableRandom(seed);
+        private final double total = baseWeight + mulWeight + compressedWeight;
+        private final int[] kinds = new int[WINDOW];
+        private final long[] starts = new long[WINDOW];
+        private long count; // Instructions laid out so far
+        private long pos;
+
+        boolean hasNext() {
+            return pos < textSize;
+        }
+
+        void next() {
+            boolean compressed = textSize - pos < 4 || random.nextDouble() * total < compressedWeight;
+            int kind;
+            if (random.nextDouble() < branchDensity) {
+                kind = compressed ? (random.nextBoolean() ? C_BRANCH : C_JUMP) : (random.nextInt(3) == 0 ? CALL : BRANCH);
+            } else if (compressed) {
+                kind = COMPRESSED;
+            } else {
+                kind = random.nextDouble() * (baseWeight + mulWeight) < mulWeight ? MUL : ALU;
+            }
+            int slot = (int) (count++ & (WINDOW - 1));
+            kinds[slot] = kind;
+            starts[slot] = pos;
+            pos += kind == COMPRESSED || kind == C_BRANCH || kind == C_JUMP ? 2 : 4;
+        }
+
+        // Only the last WINDOW instructions are known
+        int kind(long i) {
+            return kinds[(int) (i & (WINDOW - 1))];
+        }
+
+        long start(long i) {
+            return starts[(int) (i & (WINDOW - 1))];
+        }
+    }
+
+    private int functionCount() {
+        return (int) Math.max(1, Math.min(symbolCount, textSize / 4));
+    }
+
+    // Function f starts at the first instruction at or after f * textSize / functions
+    private long boundary(int f, int functions) {
+        return textSize / functions * f + textSize % functions * f / functions;
+    }
+
+    private void generate(WritableByteChannel channel) throws IOException {
+        int headerSize = wide ? 64 : 52;
+        int programHeaderSize = wide ? 56 : 32;
+        int sectionSize = wide ? 64 : 40;
+        int symbolSize = wide ? 24 : 16;
+        long textOffset = headerSize + programHeaderSize;
+        long textAddress = baseAddress + textOffset;
+        int[] names = new int[functionCount()];
+        byte[] strtab = stringTable(names);
+        byte[] shstrtab = "\0.text\0.symtab\0.strtab\0.shstrtab\0".getBytes(StandardCharsets.US_ASCII);
+
+        long symtabOffset = align(textOffset + textSize);
+        long symtabSize = (long) symbolSize * (names.length + 1);
+        long strtabOffset = symtabOffset + symtabSize;
+        long shstrtabOffset = strtabOffset + strtab.length;
+        long sectionsOffset = align(shstrtabOffset + shstrtab.length);
+        long fileSize = sectionsOffset + 5L * sectionSize;
+        Assert.ensure(wide || fileSize <= 0xffffffffL, "ELF32 files end at 4 GB, this one would need %s bytes",
+                fileSize);
+
+        // First pass: function starts and the instruction count, branch offsets need the final layout
+        long[] functions = new long[names.length];
+        Layout layout = new Layout();
+        long next = 0; // Boundary of function f, past the end once all are placed
+        for (int f = 0; layout.hasNext(); layout.next()) {
+            if (layout.pos >= next) {
+                functions[f++] = layout.pos;
+                next = f < functions.length ? boundary(f, functions.length) : textSize;
+            }
+        }
+        long count = layout.count;
+
+        Output out = new Output(channel);
+        out.put(new byte[]{0x7f, 'E', 'L', 'F', (byte) (wide ? 2 : 1), 1, 1}); // ELFCLASS64 or 32, LE, EV_CURRENT
+        out.padTo(16);
+        out.putHalf(2); // ET_EXEC
+        out.putHalf(0xf3); // RISC-V
+        out.putWord(1);
+        out.putAddress(textAddress); // Entry is the first function
+        out.putAddress(headerSize); // Program headers follow the ELF header
+        out.putAddress(sectionsOffset);
+        out.putWord(0);
+        out.putHalf(headerSize);
+        out.putHalf(programHeaderSize);
+        out.putHalf(1);
+        out.putHalf(sectionSize);
+        out.putHalf(5);
+        out.putHalf(4); // .shstrtab
+
+        // One PT_LOAD, readable and executable, with the headers and .text
+        out.putWord(1);
+        if (wide) {
+            out.putWord(1 + 4);
+        }
+        out.putAddress(0);
+        out.putAddress(baseAddress);
+        out.putAddress(baseAddress);
+        out.putAddress(textOffset + textSize);
+        out.putAddress(textOffset + textSize);
+        if (!wide) {
+            out.putWord(1 + 4);
+        }
+        out.putAddress(0x1000);
+
+        writeText(out, functions, count);
+
+        out.padTo(symtabOffset);
+        out.padTo(symtabOffset + symbolSize);
+        for (int f = 0; f < functions.length; f++) {
+            long end = f + 1 < functions.length ? functions[f + 1] : textSize;
+            out.putWord(names[f]);
+            if (wide) {
+                out.put(new byte[]{0x12, 0}); // GLOBAL FUNC
+                out.putHalf(1);
+                out.putAddress(textAddress + functions[f]);
+                out.putAddress(end - functions[f]);
+            } else {
+                out.putAddress(textAddress + functions[f]);
+                out.putAddress(end - functions[f]);
+                out.put(new byte[]{0x12, 0});
+                out.putHalf(1);
+            }
+        }
+        out.put(strtab);
+        out.put(shstrtab);
+
+        out.padTo(sectionsOffset + sectionSize);
+        putSection(out, 1, 1, 2 + 4, textAddress, textOffset, textSize, 0, 0);
+        putSection(out, 7, 2, 0, 0, symtabOffset, symtabSize, 3, symbolSize);
+        putSection(out, 15, 3, 0, 0, strtabOffset, strtab.length, 0, 0);
+        putSection(out, 23, 3, 0, 0, shstrtabOffset, shstrtab.length, 0, 0);
+        out.flush();
+    }
+
+    // Second pass: the instructions, written as they are made
+    private void writeText(Output out, long[] functions, long count) throws IOException {
+        SplittableRandom random = new SplittableRandom(~seed); // Operands, independent of the layout
+        Layout layout = new Layout();
+        int f = 0;
+        for (long i = 0; i < count; i++) {
+            while (layout.count < count && layout.count <= i + WINDOW / 2) {
+                layout.next();
+            }
+            long start = layout.start(i);
+            while (f + 1 < functions.length && functions[f + 1] <= start) {
+                f++;
+            }
+            int inst = switch (layout.kind(i)) {
+                case ALU -> wide && random.nextInt(4) == 0 ? alu64(random) : alu(random);
+                case MUL -> wide && random.nextInt(4) == 0 ? mul64(random) : mul(random);
+                case COMPRESSED -> wide && random.nextInt(4) == 0 ? compressed64(random) : compressed(random);
+                case BRANCH -> branch(random, offset(random, layout, count, i, 512));
+                case C_BRANCH -> compressedBranch(random, offset(random, layout, count, i, 32));
+                case C_JUMP -> compressedJump(offset(random, layout, count, i, 256));
+                default -> {
+                    long target = callee(random, functions, f, start);
+                    yield call(target == -1 ? offset(random, layout, count, i, 256) : (int) (target - start));
+                }
+            };
+            out.putHalf(inst);
+            if ((inst & 0b11) == 0b11) {
+                out.putHalf(inst >>> 16);
+            }
+        }
+    }
+
+    // Byte offset from instruction i to another instruction at most distance instructions away
+    private static int offset(SplittableRandom random, Layout layout, long count, long i, int distance) {
+        long target = i + random.nextInt(2 * distance + 1) - distance;
+        target = Math.max(0, Math.min(count - 1, target));
+        return (int) (layout.start(target) - layout.start(i));
+    }
+
+    // Start of a function near the caller's own, or -1 when neither is in JAL's reach of +-1 MB
+    private static long callee(SplittableRandom random, long[] functions, int f, long start) {
+        int callee = Math.max(0, Math.min(functions.length - 1, f + random.nextInt(33) - 16));
+        if (Math.abs(functions[callee] - start) < 1 << 20) {
+            return functions[callee];
+        }
+        return start - functions[f] < 1 << 20 ? functions[f] : -1;
+    }
+
+    // Names fn_<f>, padded so the table has at least stringTableSize bytes. Fills in the offset of every name
+    private byte[] stringTable(int[] names) {
+        StringBuilder strtab = new StringBuilder("\0");
+        int padding = Math.max(0, stringTableSize - 1) / names.length;
+        for (int f = 0; f < names.length; f++) {
+            names[f] = strtab.length();
+            strtab.append("fn_").append(f);
+            while (strtab.length() - names[f] < padding - 1) {
+                strtab.append('_');
+            }
+            strtab.append('\0');
+        }
+        while (strtab.length() < stringTableSize) {
+            strtab.append('\0');
+        }
+        return strtab.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static int register(SplittableRandom random) {
+        return 1 + random.nextInt(31);
+    }
+
+    private static int alu(SplittableRandom random) {
+        int rd = register(random);
+        int rs1 = random.nextInt(32);
+        int rs2 = random.nextInt(32);
+        int imm = random.nextInt(4096) - 2048;
+        return switch (random.nextInt(6)) {
+            case 0 -> rTypeBase(random, rd, rs1, rs2);
+            case 1 -> iTypeBase(random, rd, rs1, imm);
+            case 2 -> imm << 20 | rs1 << 15 | new int[]{0, 1, 2, 4, 5}[random.nextInt(5)] << 12 | rd << 7 | 0b0000011;
+            case 3 -> (imm >> 5) << 25 | rs2 << 20 | rs1 << 15 | random.nextInt(3) << 12 | (imm & 0x1f) << 7
+                    | 0b0100011;
+            case 4 -> (random.nextInt() & 0xfffff000) | rd << 7 | 0b0110111;
+            default -> (random.nextInt() & 0xfffff000) | rd << 7 | 0b0010111;
+        };
+    }
+
+    private static int iTypeBase(SplittableRandom random, int rd, int rs1, int imm) {
+        int funct3 = random.nextInt(8);
+        if (funct3 == 1 || funct3 == 5) {
+            // SLLI, SRLI and SRAI take a 5 bit shift amount, SRAI has bit 30 set
+            imm = random.nextInt(32) | (funct3 == 5 && random.nextBoolean() ? 0x400 : 0);
+        }
+        return imm << 20 | rs1 << 15 | funct3 << 12 | rd << 7 | 0b0010011;
+    }
+
+    private static int rTypeBase(SplittableRandom random, int rd, int rs1, int rs2) {
+        int funct3 = random.nextInt(8);
+        int funct7 = (funct3 == 0 || funct3 == 5) && random.nextBoolean() ? 0b0100000 : 0;
+        return funct7 << 25 | rs2 << 20 | rs1 << 15 | funct3 << 12 | rd << 7 | 0b0110011;
+    }
+
+    // LD, LWU, SD, ADDIW and the OP-32 group
+    private static int alu64(SplittableRandom random) {
+        int rd = register(random);
+        int rs1 = random.nextInt(32);
+        int rs2 = random.nextInt(32);
+        int imm = random.nextInt(4096) - 2048;
+        return switch (random.nextInt(5)) {
+            case 0 -> imm << 20 | rs1 << 15 | 0b011 << 12 | rd << 7 | 0b0000011;
+            case 1 -> imm << 20 | rs1 << 15 | 0b110 << 12 | rd << 7 | 0b0000011;
+            case 2 -> (imm >> 5) << 25 | rs2 << 20 | rs1 << 15 | 0b011 << 12 | (imm & 0x1f) << 7 | 0b0100011;
+            case 3 -> imm << 20 | rs1 << 15 | rd << 7 | 0b0011011;
+            default -> (random.nextBoolean() ? 0b0100000 : 0) << 25 | rs2 << 20 | rs1 << 15 | rd << 7 | 0b0111011;
+        };
+    }
+
+    private static int mul64(SplittableRandom random) {
+        int funct3 = new int[]{0, 4, 5, 6, 7}[random.nextInt(5)];
+        return 1 << 25 | random.nextInt(32) << 20 | random.nextInt(32) << 15 | funct3 << 12
+                | register(random) << 7 | 0b0111011;
+    }
+
+    // C.LD, C.SD, C.ADDIW, C.LDSP and C.SDSP
+    private static int compressed64(SplittableRandom random) {
+        int rd = register(random);
+        int imm = random.nextInt(64);
+        int uimm = random.nextInt(32) << 3; // C.LD/C.SD offsets are multiples of 8 up to 248
+        int memory = (uimm >> 3 & 0x7) << 10 | random.nextInt(8) << 7 | (uimm >> 6 & 0x3) << 5 | random.nextInt(8) << 2;
+        return switch (random.nextInt(5)) {
+            case 0 -> 0b011 << 13 | memory;
+            case 1 -> 0b111 << 13 | memory;
+            case 2 -> 0b001 << 13 | (imm >> 5) << 12 | rd << 7 | (imm & 0x1f) << 2 | 0b01;
+            case 3 -> 0b011 << 13 | (imm >> 5) << 12 | rd << 7 | (imm & 0x1f) << 2 | 0b10;
+            default -> 0b111 << 13 | imm << 7 | random.nextInt(32) << 2 | 0b10;
+        };
+    }
+
+    private static int mul(SplittableRandom random) {
+        return 1 << 25 | random.nextInt(32) << 20 | random.nextInt(32) << 15 | random.nextInt(8) << 12
+                | register(random) << 7 | 0b0110011;
+    }
+
+    private static int compressed(SplittableRandom random) {
+        int rd = register(random);
+        int imm = random.nextInt(64);
+        int rdC = random.nextInt(8);
+        int rs1C = random.nextInt(8);
+        int uimm = random.nextInt(32) << 2; // C.LW/C.SW offsets are multiples of 4 up to 124
+        int memory = (uimm >> 3 & 0x7) << 10 | rs1C << 7 | (uimm >> 2 & 1) << 6 | (uimm >> 6 & 1) << 5 | rdC << 2;
+        return switch (random.nextInt(6)) {
+            case 0 -> 0b000 << 13 | (imm >> 5) << 12 | rd << 7 | (imm & 0x1f) << 2 | 0b01; // C.ADDI
+            case 1 -> 0b010 << 13 | (imm >> 5) << 12 | rd << 7 | (imm & 0x1f) << 2 | 0b01; // C.LI
+            case 2 -> 0b100 << 13 | rd << 7 | register(random) << 2 | 0b10; // C.MV
+            case 3 -> 0b100 << 13 | 1 << 12 | rd << 7 | register(random) << 2 | 0b10; // C.ADD
+            case 4 -> 0b010 << 13 | memory; // C.LW
+            default -> 0b110 << 13 | memory; // C.SW
+        };
+    }
+
+    private static int branch(SplittableRandom random, int offset) {
+        int funct3 = new int[]{0, 1, 4, 5, 6, 7}[random.nextInt(6)];
+        return (offset >> 12 & 1) << 31 | (offset >> 5 & 0x3f) << 25 | random.nextInt(32) << 20
+                | random.nextInt(32) << 15 | funct3 << 12 | (offset >> 1 & 0xf) << 8 | (offset >> 11 & 1) << 7
+                | 0b1100011;
+    }
+
+    private static int compressedBranch(SplittableRandom random, int offset) {
+        int funct3 = random.nextBoolean() ? 0b110 : 0b111; // C.BEQZ, C.BNEZ
+        return funct3 << 13 | (offset >> 8 & 1) << 12 | (offset >> 3 & 0x3) << 10 | random.nextInt(8) << 7
+                | (offset >> 6 & 0x3) << 5 | (offset >> 1 & 0x3) << 3 | (offset >> 5 & 1) << 2 | 0b01;
+    }
+
+    private static int compressedJump(int offset) {
+        return 0b101 << 13 | (offset >> 11 & 1) << 12 | (offset >> 4 & 1) << 11 | (offset >> 8 & 0x3) << 9
+                | (offset >> 10 & 1) << 8 | (offset >> 6 & 1) << 7 | (offset >> 7 & 1) << 6
+                | (offset >> 1 & 0x7) << 3 | (offset >> 5 & 1) << 2 | 0b01;
+    }
+
+    // JAL ra, JAL's reach is +-1 MB
+    private static int call(int offset) {
+        return (offset >> 20 & 1) << 31 | (offset >> 1 & 0x3ff) << 21 | (offset >> 11 & 1) << 20
+                | (offset >> 12 & 0xff) << 12 | 1 << 7 | 0b1101111;
+    }
+
+    private long align(long pos) {
+        int alignment = wide ? 8 : 4;
+        return (pos + alignment - 1) & -alignment;
+    }
+
+    private static void putSection(Output out, int name, int type, int flags, long address,
+                                   long offset, long size, int link, int entrySize) throws IOException {
+        out.putWord(name);
+        out.putWord(type);
+        out.putAddress(flags);
+        out.putAddress(address);
+        out.putAddress(offset);
+        out.putAddress(size);
+        out.putWord(link);
+        out.putWord(0); // sh_info
+        out.putAddress(0); // sh_addralign
+        out.putAddress(entrySize);
+    }
+
+    // Little-endian writes through a buffer that goes to the channel whenever it fills up
+    private final class Output {
+        private final WritableByteChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        private long written;
+
+        Output(WritableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        private void reserve(int size) throws IOException {
+            if (buffer.remaining() < size) {
+                flush();
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                written += channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        long position() {
+            return written + buffer.position();
+        }
+
+        void putHalf(int value) throws IOException {
+            reserve(2);
+            buffer.putShort((short) value);
+        }
+
+        void putWord(int value) throws IOException {
+            reserve(4);
+            buffer.putInt(value);
+        }
+
+        // Addresses, offsets and sizes are 8 bytes in ELF64
+        void putAddress(long value) throws IOException {
+            reserve(8);
+            if (wide) {
+                buffer.putLong(value);
+            } else {
+                buffer.putInt((int) value);
+            }
+        }
+
+        void put(byte[] bytes) throws IOException {
+            for (int pos = 0; pos < bytes.length; ) {
+                reserve(1);
+                int length = Math.min(buffer.remaining(), bytes.length - pos);
+                buffer.put(bytes, pos, length);
+                pos += length;
+            }
+        }
+
+        // Zeros up to pos
+        void padTo(long pos) throws IOException {
+            Assert.ensure(position() <= pos, "Wrote past %s", pos);
+            while (position() < pos) {
+                reserve(1);
+                buffer.put((byte) 0);
+            }
+        }
+    }
+}
@@ -1,28 +1,56 @@
 package project;
 
-public class ElfHeader {
-    public static byte EI_CLASS;
-    public static byte EI_DATA;
-    public static byte EI_OSABI;
-    public static byte EI_ABIVERSION;
+public final class ElfHeader {
+    public final byte EI_CLASS;
+    public final byte EI_DATA;
+    public final byte EI_OSABI;
+    public final byte EI_ABIVERSION;
 
-    public static int E_TYPE;
-    public static int E_MACHINE;
+    public final int E_TYPE;
+    public final int E_MACHINE;
 
-    public static int E_ENTRY;
-    public static int PROGRAM_HEADERS_OFFSET;
-    public static int SECTION_HEADERS_OFFSET;
+    // Unsigned, ELF32 values are zero-extended
+    public final long E_ENTRY;
+    public final long PROGRAM_HEADERS_OFFSET;
+    public final long SECTION_HEADERS_OFFSET;
 
-    public static int E_FLAGS;
-    public static int E_ELF_HEADER_SIZE;
-    public static int E_PROGRAM_HEADER_SIZE;
-    public static int E_PROGRAM_HEADERS_NUMBER;
-    public static int E_PROGRAM_SECTION_SIZE;
-    public static int E_PROGRAM_SECTION_NUMBER;
-    public static int E_SHSTRNDX;
+    public final int E_FLAGS;
+    public final int E_ELF_HEADER_SIZE;
+    public final int E_PROGRAM_HEADER_SIZE;
+    public final int E_PROGRAM_HEADERS_NUMBER;
+    public final int E_PROGRAM_SECTION_SIZE;
+    public final int E_PROGRAM_SECTION_NUMBER;
+    public final int E_SHSTRNDX;
 
+    public ElfHeader(byte EI_CLASS, byte EI_DATA, byte EI_OSABI, byte EI_ABIVERSION,
+                     int E_TYPE, int E_MACHINE, long E_ENTRY,
+                     long PROGRAM_HEADERS_OFFSET, long SECTION_HEADERS_OFFSET, int E_FLAGS,
+                     int E_ELF_HEADER_SIZE, int E_PROGRAM_HEADER_SIZE, int E_PROGRAM_HEADERS_NUMBER,
+                     int E_PROGRAM_SECTION_SIZE, int E_PROGRAM_SECTION_NUMBER, int E_SHSTRNDX) {
+        this.EI_CLASS = EI_CLASS;
+        this.EI_DATA = EI_DATA;
+        this.EI_OSABI = EI_OSABI;
+        this.EI_ABIVERSION = EI_ABIVERSION;
+        this.E_TYPE = E_TYPE;
+        this.E_MACHINE = E_MACHINE;
+        this.E_ENTRY = E_ENTRY;
+        this.PROGRAM_HEADERS_OFFSET = PROGRAM_HEADERS_OFFSET;
+        this.SECTION_HEADERS_OFFSET = SECTION_HEADERS_OFFSET;
+        this.E_FLAGS = E_FLAGS;
+        this.E_ELF_HEADER_SIZE = E_ELF_HEADER_SIZE;
+        this.E_PROGRAM_HEADER_SIZE = E_PROGRAM_HEADER_SIZE;
+        this.E_PROGRAM_HEADERS_NUMBER = E_PROGRAM_HEADERS_NUMBER;
+        this.E_PROGRAM_SECTION_SIZE = E_PROGRAM_SECTION_SIZE;
+        this.E_PROGRAM_SECTION_NUMBER = E_PROGRAM_SECTION_NUMBER;
+        this.E_SHSTRNDX = E_SHSTRNDX;
+    }
+
+    public boolean is64() {
+        return EI_CLASS == 0x02;
+    }
 
-    public static String getHeader() {
+    @Override
+    public String toString() {
         return "ELFHeader{" + "\n" +
                 "EI_CLASS=" + EI_CLASS + "\n" +
                 ", EI_DATA=" + EI_DATA + "\n" +
@@ -0,0 +1,160 @@
+package project;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Everything ElfParser learns about a file before decoding. Nothing here changes after
+// construction, so a model can be cached and shared between threads.
+public final class ElfModel {
+    private final ElfData file;
+    private final ElfHeader header;
+    private final List<SectionHeader> sections;
+    private final List<Symbol> symbols;
+    private final SectionHeader symtab;
+    private final SectionHeader text;
+    private final List<SectionHeader> executable;
+    private final StringTable stringTable;
+    private final long codeWindow;
+    private volatile SymbolIndex symbolIndex;
+    private volatile StringTable sectionNames;
+
+    public ElfModel(ElfData file, ElfHeader header, SectionHeader[] sections, Symbol[] symbols) {
+        this.file = file;
+        this.header = header;
+        this.sections = List.of(sections);
+        this.symbols = List.of(symbols);
+        SectionHeader symtab = null, text = null;
+        List<SectionHeader> executable = new ArrayList<>();
+        for (SectionHeader section : sections) {
+            if (section.getSh_type() == 2) {
+                symtab = section;
+            }
+            if (section.getSh_type() == 1 && section.getSh_flags() == 2 + 4) {
+                text = section;
+            }
+            if (section.getSh_type() == 1 && (section.getSh_flags() & (2 + 4)) == 2 + 4 && section.getSh_size() > 0) {
+                executable.add(section);
+            }
+        }
+        executable.sort((a, b) -> Long.compareUnsigned(a.getFullAddress(), b.getFullAddress()));
+        this.symtab = symtab;
+        this.text = text;
+        this.executable = List.copyOf(executable);
+        // Instruction stores, labels and symbol lookups keep the low 32 bits of an address, so all code
+        // must share the upper 32 bits or its addresses would wrap around in the middle
+        long window = executable.isEmpty() ? text == null ? 0 : text.getFullAddress() >>> 32
+                : executable.get(0).getFullAddress() >>> 32;
+        for (SectionHeader section : executable) {
+            Assert.ensure(isInWindow(section.getFullAddress(), Integer.toUnsignedLong(section.getSh_size()), window),
+                    "Code at 0x%s crosses a 4 GB boundary or lies in another 4 GB window than the rest",
+                    Long.toHexString(section.getFullAddress()));
+        }
+        this.codeWindow = window;
+        if (symtab != null) {
+            Assert.ensure(symtab.getSh_link() >= 0 && symtab.getSh_link() < sections.length,
+                    "Symbol table links to section %s, but there are %s sections", symtab.getSh_link(), sections.length);
+        }
+        this.stringTable = symtab == null ? null : new StringTable(file, sections[symtab.getSh_link()]);
+    }
+
+    public ElfData getFile() {
+        return file;
+    }
+
+    public ElfHeader getHeader() {
+        return header;
+    }
+
+    public List<SectionHeader> getSections() {
+        return sections;
+    }
+
+    public List<Symbol> getSymbols() {
+        return symbols;
+    }
+
+    // Last SHT_SYMTAB section, or null
+    public SectionHeader getSymtab() {
+        return symtab;
+    }
+
+    // String table linked to .symtab, or null
+    public StringTable getStringTable() {
+        return stringTable;
+    }
+
+    // Last SHF_ALLOC | SHF_EXECINSTR PROGBITS section, or null
+    public SectionHeader getText() {
+        return text;
+    }
+
+    public InstructionSet getInstructionSet() {
+        return header.is64() ? Decoder.xlen64() : Decoder.XLEN32;
+    }
+
+    // Every non-empty SHF_ALLOC | SHF_EXECINSTR PROGBITS section, sorted by address
+    public List<SectionHeader> getExecutableSections() {
+        return executable;
+    }
+
+    // Name from the E_SHSTRNDX string table, or the section's index when there is none
+    public String getSectionName(SectionHeader section) {
+        StringTable names = sectionNames;
+        if (names == null) {
+            int index = header.E_SHSTRNDX;
+            if (index == 0 || index >= sections.size()) {
+                return "section " + sections.indexOf(section);
+            }
+            names = new StringTable(file, sections.get(index));
+            sectionNames = names;
+        }
+        return names.get(section.getSh_name());
+    }
+
+    // Upper 32 bits of the addresses of all executable sections, 0 in ELF32 files
+    public long getCodeWindow() {
+        return codeWindow;
+    }
+
+    public boolean isInCodeWindow(long address) {
+        return address >>> 32 == codeWindow;
+    }
+
+    // Whether size bytes from start stay in the 4 GB window with the given upper 32 bits
+    static boolean isInWindow(long start, long size, long window) {
+        return start >>> 32 == window && (size == 0 || (start + size - 1) >>> 32 == window);
+    }
+
+    // Built on first use, most runs never ask which symbol covers an address
+    public SymbolIndex getSymbolIndex() {
+        SymbolIndex index = symbolIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = symbolIndex;
+                if (index == null) {
+                    index = new SymbolIndex(symbols, codeWindow);
+                    symbolIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    public String getSymbolName(Symbol symbol) {
+        return stringTable.get(symbol.getName());
+    }
+
+    // First symbol with the given name, compared without decoding the string table
+    public Symbol findSymbol(String name) {
+        if (stringTable == null) {
+            return null;
+        }
+        byte[] raw = StringTable.encode(name);
+        for (Symbol symbol : symbols) {
+            if (stringTable.matches(symbol.getName(), raw)) {
+                return symbol;
+            }
+        }
+        return null;
+    }
+}
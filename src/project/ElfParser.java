@@ -1,246 +1,788 @@
 package project;
 
 import java.io.PrintWriter;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 public class ElfParser {
-    private final byte[] file;
-    private SectionHeader[] sectionHeaders;
-    Map<Integer, String> tags;
-    private int LOC = 0;
+    private static final int FLUSH_SIZE = 1 << 16;
+
+    private final ElfData file;
+    LabelTable tags;
+    private ForkJoinPool pool;
+    private int pipelineThreads;
+    private DisassemblyCache cache;
+    private boolean recursive;
+    private boolean allSections;
+    private boolean segments;
+    private boolean relocations;
+    private boolean fold;
+    private final Map<SectionHeader, RelocationIndex> relocationIndexes = new IdentityHashMap<>();
+    private ElfModel previous;
+    private Metrics metrics;
+    // What parse read, so that the graphs built after it don't decode again
+    private ElfModel parsedModel;
+    private InstructionStore parsedText;
 
     public ElfParser(byte[] file) {
-        this.file = file;
-        tags = new HashMap<>();
+        this(ByteBuffer.wrap(file));
     }
 
-    private byte take(int pos) {
-        Assert.ensure(pos < file.length, "Tried to read byte %s, while there are %s bytes only",
-                pos + 1, file.length);
-        return file[pos];
+    public ElfParser(ByteBuffer file) {
+        this.file = new ElfData(file);
+        tags = new LabelTable();
     }
 
-    private void ensureBlock(int pos, int... block) {
-        for (int j = 0; j < block.length; j++) {
-            Assert.ensure(block[j] == take(pos + j),
-                    "Expected byte %s to be %s, but got %s",
-                    pos + j + 1, block[j], take(pos + j));
-        }
+    // Decode .text on the pool, split at function symbols. Output is the same as the sequential one
+    public void setParallel(ForkJoinPool pool) {
+        this.pool = pool;
     }
 
-    private byte[] readSeq(int pos, int len) {
-        Assert.ensure(pos + len <= file.length,
-                "Couldn't read sequence. Pos is %s, len is %s but file size is %s",
-                pos, len, file.length);
-        return Arrays.copyOfRange(file, pos, pos + len);
+    // Stream .text through a decode/render pipeline instead of keeping it decoded
+    public void setPipeline(int threads) {
+        this.pipelineThreads = threads;
     }
 
-    private int littleEndianToInt(byte[] number) {
-        int res = 0;
-        for (int i = number.length - 1; i >= 0; i--) {
-            res <<= 8;
-            res |= Byte.toUnsignedInt(number[i]);
-        }
-        return res;
+    // Decode only what is reachable from the entry point and function symbols
+    public void setRecursive(boolean recursive) {
+        this.recursive = recursive;
+    }
+
+    // Disassemble every executable section instead of .text alone, each under its own name
+    public void setAllSections(boolean allSections) {
+        this.allSections = allSections;
+    }
+
+    // Disassemble executable PT_LOAD segments instead of sections, for files without section headers
+    public void setSegments(boolean segments) {
+        this.segments = segments;
+    }
+
+    // Show what the SHT_RELA and SHT_REL entries against a section refer to, for relocatable objects
+    public void setRelocations(boolean relocations) {
+        this.relocations = relocations;
+    }
+
+    // Resolve AUIPC/LUI pairs into the addresses they form, JALR targets get labels
+    public void setFold(boolean fold) {
+        this.fold = fold;
+    }
+
+    // Reuse decoded .text from earlier runs over the same bytes
+    public void setCache(DisassemblyCache cache) {
+        this.cache = cache;
+    }
+
+    // Build this file was derived from. On a cache miss, functions that didn't change since it
+    // are copied from its cache entry instead of being decoded again
+    public void setPrevious(ElfModel previous) {
+        this.previous = previous;
+    }
+
+    // Counters and stage timers are added to metrics, which may be shared with other parsers
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
     }
 
-    private int read4BytesAsInt(int pos) {
-        return littleEndianToInt(readSeq(pos,4));
+    // Adds the time since start to the stage and returns the current time
+    private long lap(Metrics.Stage stage, long start) {
+        if (metrics == null) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        metrics.addStage(stage, now - start);
+        return now;
     }
 
-    private int read2BytesAsInt(int pos) {
-        return littleEndianToInt(readSeq(pos, 2));
+    private void ensureBlock(int pos, int... block) {
+        for (int j = 0; j < block.length; j++) {
+            Assert.ensure(block[j] == file.getByte(pos + j),
+                    "Expected byte %s to be %s, but got %s",
+                    pos + j + 1, block[j], file.getByte(pos + j));
+        }
     }
 
-    private void readElfHeader() {
+    ElfHeader readElfHeader() {
         int pos = 0;
+        file.ensureRange(0, 16, "ELF identification");
         ensureBlock(0, 0x7f, 0x45, 0x4c, 0x46);
         pos += 4;
 
-        ElfHeader.EI_CLASS = take(pos++);
-        Assert.ensure(ElfHeader.EI_CLASS == 0x01, "This is not a 32-bit file");
+        byte EI_CLASS = file.getByte(pos++);
+        Assert.ensure(EI_CLASS == 0x01 || EI_CLASS == 0x02, "This is neither a 32-bit nor a 64-bit file");
+        boolean wide = EI_CLASS == 0x02;
 
-        ElfHeader.EI_DATA = take(pos++);
-        Assert.ensure(ElfHeader.EI_DATA == 0x01, "This is not a Little-Endian file");
+        byte EI_DATA = file.getByte(pos++);
+        Assert.ensure(EI_DATA == 0x01, "This is not a Little-Endian file");
 
         ensureBlock(0x01); // EI_VERSION
         pos++;
-        ElfHeader.EI_OSABI = take(pos++);
-        ElfHeader.EI_ABIVERSION = take(pos++);
-        readSeq(pos, 7); // Padding
-        pos += 7;
+        byte EI_OSABI = file.getByte(pos++);
+        byte EI_ABIVERSION = file.getByte(pos++);
+        pos += 7; // Padding
+        file.ensureRange(0, wide ? 64 : 52, "ELF header");
 
 
-        ElfHeader.E_TYPE = read2BytesAsInt(pos); pos += 2;
-        ElfHeader.E_MACHINE = read2BytesAsInt(pos); pos += 2;
-        Assert.ensure(ElfHeader.E_MACHINE == 0xf3, "RISC-V is supported only");
+        int E_TYPE = file.getHalf(pos); pos += 2;
+        int E_MACHINE = file.getHalf(pos); pos += 2;
+        Assert.ensure(E_MACHINE == 0xf3, "RISC-V is supported only");
 
-        Assert.ensure(read4BytesAsInt(pos) == 1, "Format version must be equal to 1"); pos += 4;
+        Assert.ensure(file.getWord(pos) == 1, "Format version must be equal to 1"); pos += 4;
 
-        ElfHeader.E_ENTRY = read4BytesAsInt(pos); // This is a 32-bit file
-        pos += 4;
-        ElfHeader.PROGRAM_HEADERS_OFFSET = read4BytesAsInt(pos); pos += 4;
-        ElfHeader.SECTION_HEADERS_OFFSET = read4BytesAsInt(pos); pos += 4;
+        // Addresses and offsets are 8 bytes in a 64-bit file
+        long E_ENTRY = readAddress(pos, wide); pos += wide ? 8 : 4;
+        long PROGRAM_HEADERS_OFFSET = readAddress(pos, wide); pos += wide ? 8 : 4;
+        long SECTION_HEADERS_OFFSET = readAddress(pos, wide); pos += wide ? 8 : 4;
+
+        int E_FLAGS = file.getWord(pos); pos += 4;
+        int E_ELF_HEADER_SIZE = file.getHalf(pos); pos += 2;
 
-        ElfHeader.E_FLAGS = read4BytesAsInt(pos); pos += 4;
-        ElfHeader.E_ELF_HEADER_SIZE = read2BytesAsInt(pos); pos += 2;
+        int E_PROGRAM_HEADER_SIZE = file.getHalf(pos); pos += 2;
+        int E_PROGRAM_HEADERS_NUMBER = file.getHalf(pos); pos += 2;
 
-        ElfHeader.E_PROGRAM_HEADER_SIZE = read2BytesAsInt(pos); pos += 2;
-        ElfHeader.E_PROGRAM_HEADERS_NUMBER = read2BytesAsInt(pos); pos += 2;
+        int E_PROGRAM_SECTION_SIZE = file.getHalf(pos); pos += 2;
+        int E_PROGRAM_SECTION_NUMBER = file.getHalf(pos); pos += 2;
 
-        ElfHeader.E_PROGRAM_SECTION_SIZE = read2BytesAsInt(pos); pos += 2;
-        ElfHeader.E_PROGRAM_SECTION_NUMBER = read2BytesAsInt(pos); pos += 2;
+        int E_SHSTRNDX = file.getHalf(pos);
 
-        ElfHeader.E_SHSTRNDX = read2BytesAsInt(pos);
+        return new ElfHeader(EI_CLASS, EI_DATA, EI_OSABI, EI_ABIVERSION, E_TYPE, E_MACHINE, E_ENTRY,
+                PROGRAM_HEADERS_OFFSET, SECTION_HEADERS_OFFSET, E_FLAGS, E_ELF_HEADER_SIZE,
+                E_PROGRAM_HEADER_SIZE, E_PROGRAM_HEADERS_NUMBER, E_PROGRAM_SECTION_SIZE,
+                E_PROGRAM_SECTION_NUMBER, E_SHSTRNDX);
     }
 
-    private SectionHeader readSectionHeader(int pos) {
-        SectionHeader sectionHeader = new SectionHeader();
+    private long readAddress(int pos, boolean wide) {
+        return wide ? file.getLong(pos) : Integer.toUnsignedLong(file.getWord(pos));
+    }
 
-        sectionHeader.setSh_name(read4BytesAsInt(pos)); pos += 4;
-        sectionHeader.setSh_type(read4BytesAsInt(pos)); pos += 4;
-        sectionHeader.setSh_flags(read4BytesAsInt(pos)); pos += 4;
-        sectionHeader.setSh_address(read4BytesAsInt(pos)); pos += 4;
-        sectionHeader.setSh_offset(read4BytesAsInt(pos)); pos += 4;
-        sectionHeader.setSh_size(read4BytesAsInt(pos)); pos += 4;
+    // Offsets and sizes of ELF64 structures still have to be inside the mapped file
+    private int readOffset(int pos, String what) {
+        long value = file.getLong(pos);
+        Assert.ensure(value >= 0 && value <= Integer.MAX_VALUE, "%s is %s, which is past the end of the file",
+                what, Long.toUnsignedString(value));
+        return (int) value;
+    }
 
-        sectionHeader.setSh_link(read4BytesAsInt(pos)); pos += 4;
-        sectionHeader.setSh_info(read4BytesAsInt(pos)); pos += 4;
-        sectionHeader.setSh_address_align(read4BytesAsInt(pos)); pos += 4;
-        sectionHeader.setSh_entry_size(read4BytesAsInt(pos));
+    private SectionHeader readSectionHeader64(int pos) {
+        return new SectionHeader(
+                file.getWord(pos), // sh_name
+                file.getWord(pos + 4), // sh_type
+                (int) file.getLong(pos + 8), // sh_flags, every defined flag is in the low half
+                file.getLong(pos + 16), // sh_addr
+                readOffset(pos + 24, "Section offset"), // sh_offset
+                readOffset(pos + 32, "Section size"), // sh_size
+                file.getWord(pos + 40), // sh_link
+                file.getWord(pos + 44), // sh_info
+                (int) file.getLong(pos + 48), // sh_addralign
+                readOffset(pos + 56, "Section entry size")); // sh_entsize
+    }
 
-        return sectionHeader;
+    private SectionHeader readSectionHeader(int pos) {
+        return new SectionHeader(
+                file.getWord(pos), // sh_name
+                file.getWord(pos + 4), // sh_type
+                file.getWord(pos + 8), // sh_flags
+                Integer.toUnsignedLong(file.getWord(pos + 12)), // sh_addr
+                file.getWord(pos + 16), // sh_offset
+                file.getWord(pos + 20), // sh_size
+                file.getWord(pos + 24), // sh_link
+                file.getWord(pos + 28), // sh_info
+                file.getWord(pos + 32), // sh_addralign
+                file.getWord(pos + 36)); // sh_entsize
     }
 
-    private SectionHeader[] readAllSectionHeaders() {
-        int pos = ElfHeader.SECTION_HEADERS_OFFSET;
-        SectionHeader[] sectionHeaders = new SectionHeader[ElfHeader.E_PROGRAM_SECTION_NUMBER];
+    SectionHeader[] readAllSectionHeaders(ElfHeader header) {
+        int minSize = header.is64() ? 64 : 40;
+        Assert.ensure(header.E_PROGRAM_SECTION_NUMBER == 0 || header.E_PROGRAM_SECTION_SIZE >= minSize,
+                "Section header size is %s, expected at least %s", header.E_PROGRAM_SECTION_SIZE, minSize);
+        int pos = (int) Math.min(header.SECTION_HEADERS_OFFSET, Integer.MAX_VALUE);
+        file.ensureRange(pos, header.E_PROGRAM_SECTION_NUMBER * header.E_PROGRAM_SECTION_SIZE,
+                "section headers");
+        SectionHeader[] sectionHeaders = new SectionHeader[header.E_PROGRAM_SECTION_NUMBER];
         for (int i = 0; i < sectionHeaders.length; i++) {
-            sectionHeaders[i] = readSectionHeader(pos);
-            pos += ElfHeader.E_PROGRAM_SECTION_SIZE;
+            sectionHeaders[i] = header.is64() ? readSectionHeader64(pos) : readSectionHeader(pos);
+            pos += header.E_PROGRAM_SECTION_SIZE;
         }
         return sectionHeaders;
     }
 
-    public static String getStringFromStringTable(int index, SectionHeader stringTable, byte[] file) {
-        Assert.ensure(index < stringTable.getSh_size(), "Bad index: %s, but stringTable size is %s",
-                    index, stringTable.getSh_size());
-        StringBuilder val = new StringBuilder();
-        while (file[index + stringTable.getSh_offset()] != 0) {
-            val.append((char) (file[index + stringTable.getSh_offset()]));
-            index++;
-        }
-        return val.toString();
+    private ProgramHeader readProgramHeader(int pos) {
+        return new ProgramHeader(
+                file.getWord(pos), // p_type
+                file.getWord(pos + 24), // p_flags
+                file.getWord(pos + 4), // p_offset
+                Integer.toUnsignedLong(file.getWord(pos + 8)), // p_vaddr
+                file.getWord(pos + 16), // p_filesz
+                Integer.toUnsignedLong(file.getWord(pos + 20)), // p_memsz
+                Integer.toUnsignedLong(file.getWord(pos + 28))); // p_align
     }
 
-    private Symbol readSymbol(int pos) {
+    private ProgramHeader readProgramHeader64(int pos) {
+        return new ProgramHeader(
+                file.getWord(pos), // p_type
+                file.getWord(pos + 4), // p_flags
+                readOffset(pos + 8, "Segment offset"), // p_offset
+                file.getLong(pos + 16), // p_vaddr
+                readOffset(pos + 32, "Segment file size"), // p_filesz
+                file.getLong(pos + 40), // p_memsz
+                file.getLong(pos + 48)); // p_align
+    }
 
-        Symbol symbol = new Symbol();
-        symbol.setName(read4BytesAsInt(pos)); pos += 4;
-        symbol.setValue(read4BytesAsInt(pos)); pos += 4;
-        symbol.setSize(read4BytesAsInt(pos)); pos += 4;
-        symbol.setInfo(take(pos)); pos++;
-        symbol.setOther(take(pos)); pos++;
-        symbol.setShndx(read2BytesAsInt(pos));
+    ProgramHeader[] readAllProgramHeaders(ElfHeader header) {
+        int minSize = header.is64() ? 56 : 32;
+        Assert.ensure(header.E_PROGRAM_HEADERS_NUMBER == 0 || header.E_PROGRAM_HEADER_SIZE >= minSize,
+                "Program header size is %s, expected at least %s", header.E_PROGRAM_HEADER_SIZE, minSize);
+        int pos = (int) Math.min(header.PROGRAM_HEADERS_OFFSET, Integer.MAX_VALUE);
+        file.ensureRange(pos, header.E_PROGRAM_HEADERS_NUMBER * header.E_PROGRAM_HEADER_SIZE,
+                "program headers");
+        ProgramHeader[] programHeaders = new ProgramHeader[header.E_PROGRAM_HEADERS_NUMBER];
+        for (int i = 0; i < programHeaders.length; i++) {
+            programHeaders[i] = header.is64() ? readProgramHeader64(pos) : readProgramHeader(pos);
+            pos += header.E_PROGRAM_HEADER_SIZE;
+        }
+        return programHeaders;
+    }
+
+    private Symbol readSymbol(int pos, int index) {
+        return new Symbol(index,
+                file.getWord(pos), // st_name
+                file.getWord(pos + 4), // st_value
+                file.getWord(pos + 8), // st_size
+                file.getByte(pos + 12), // st_info
+                file.getByte(pos + 13), // st_other
+                file.getHalf(pos + 14)); // st_shndx
+    }
 
-        return symbol;
+    private Symbol readSymbol64(int pos, int index) {
+        return new Symbol(index,
+                file.getWord(pos), // st_name
+                file.getLong(pos + 8), // st_value
+                file.getLong(pos + 16), // st_size
+                file.getByte(pos + 4), // st_info
+                file.getByte(pos + 5), // st_other
+                file.getHalf(pos + 6)); // st_shndx
     }
 
-    private Symbol[] readSymtab(SectionHeader symtab, SectionHeader stringTable) {
+    Symbol[] readSymtab(SectionHeader symtab, boolean wide) {
         int index = symtab.getSh_offset();
+        int minSize = wide ? 24 : 16;
+        Assert.ensure(symtab.getSh_entry_size() >= minSize, "Symbol size is %s, expected at least %s",
+                symtab.getSh_entry_size(), minSize);
+        file.ensureRange(index, symtab.getSh_size(), "symbol table");
         Symbol[] res = new Symbol[symtab.getSh_size() / symtab.getSh_entry_size()];
         for (int i = 0; i < res.length; i++) {
-            res[i] = readSymbol(index);
-            res[i].setSymbolIndex(i);
-            if (res[i].getType() == 2) { // Function
-                tags.put(res[i].getValue(), getStringFromStringTable(res[i].getName(), stringTable, file));
-            }
+            res[i] = wide ? readSymbol64(index, i) : readSymbol(index, i);
             index += symtab.getSh_entry_size();
         }
         return res;
     }
 
-    private AsmCommand[] readText(SectionHeader textHeader) {
-        int pos = textHeader.getSh_offset();
-        int address = textHeader.getAddress();
+    public ElfModel readModel() {
+        return readModel(readElfHeader());
+    }
 
-        ArrayList<AsmCommand> res = new ArrayList<>();
-        while (pos < textHeader.getSh_offset() + textHeader.getSh_size()) {
-            AsmCommand cmd;
-            if (AsmCommand.InstructionType.getIsaInstructionType(take(pos) & 0x3) == AsmCommand.InstructionType.RV32) {
-                cmd = new AsmCommand(read4BytesAsInt(pos), address, tags);
-                pos += 4;
-                address += 4;
-            } else {
-                cmd = new AsmCommand(read2BytesAsInt(pos), address, tags);
-                pos += 2;
-                address += 2;
+    private ElfModel readModel(ElfHeader header) {
+        SectionHeader[] sectionHeaders = readAllSectionHeaders(header);
+        SectionHeader symtab = null;
+        for (SectionHeader section : sectionHeaders) {
+            if (section.getSh_type() == 2) {
+                symtab = section;
+            }
+        }
+        Symbol[] symbols = symtab == null ? new Symbol[0] : readSymtab(symtab, header.is64());
+        return new ElfModel(file, header, sectionHeaders, symbols);
+    }
+
+    // Labels are keyed by the low 32 bits of an address, so in an ELF64 file only symbols
+    // in the 4 GB window of the code are labels
+    void addSymbolLabels(ElfModel model) {
+        for (Symbol symbol : model.getSymbols()) {
+            if (symbol.getType() == 2 && model.isInCodeWindow(symbol.getFullValue())) { // Function
+                tags.put(symbol.getValue(), model.getSymbolName(symbol));
             }
-            res.add(cmd);
+        }
+    }
 
-            Integer jmp = cmd.getJumpAddress();
-            if (jmp != null) {
-                if (!tags.containsKey(jmp)) {
-                    tags.put(jmp, String.format("LOC_%05x", LOC++));
+    // Relocation sections name the section they patch in sh_info. In a relocatable object r_offset
+    // is an offset into that section, elsewhere it is an address
+    RelocationIndex readRelocations(ElfModel model, SectionHeader section) {
+        List<SectionHeader> sections = model.getSections();
+        int target = sections.indexOf(section);
+        boolean wide = model.getHeader().is64();
+        int base = model.getHeader().E_TYPE == 1 ? section.getAddress() : 0; // Relocatable
+        int expected = 0;
+        for (SectionHeader table : sections) {
+            if ((table.getSh_type() == 4 || table.getSh_type() == 9) && table.getSh_info() == target) {
+                expected += table.getSh_entry_size() == 0 ? 0 : table.getSh_size() / table.getSh_entry_size();
+            }
+        }
+        RelocationIndex index = new RelocationIndex(expected);
+        for (SectionHeader table : sections) {
+            if ((table.getSh_type() != 4 && table.getSh_type() != 9) || table.getSh_info() != target) {
+                continue;
+            }
+            boolean rela = table.getSh_type() == 4;
+            int entrySize = table.getSh_entry_size();
+            int minSize = (wide ? 16 : 8) + (rela ? (wide ? 8 : 4) : 0);
+            Assert.ensure(entrySize >= minSize, "Relocation size is %s, expected at least %s", entrySize, minSize);
+            file.ensureRange(table.getSh_offset(), table.getSh_size(), "relocation table");
+            int end = table.getSh_offset() + table.getSh_size() / entrySize * entrySize;
+            for (int pos = table.getSh_offset(); pos < end; pos += entrySize) {
+                long offset = readAddress(pos, wide); // r_offset
+                long info = readAddress(pos + (wide ? 8 : 4), wide); // r_info
+                int type = wide ? (int) info : (int) (info & 0xff);
+                if (!RelocationIndex.isKnown(type)) {
+                    continue;
                 }
+                int symbol = (int) (wide ? info >>> 32 : info >>> 8);
+                long addend = !rela ? 0 : wide ? file.getLong(pos + 16) : file.getWord(pos + 8); // r_addend
+                index.add(base + (int) offset, type, relocationSymbol(model, symbol), addend);
             }
         }
-        AsmCommand[] answer = new AsmCommand[res.size()];
-        res.toArray(answer);
+        return index;
+    }
 
-        return answer;
+    // Section symbols have no name of their own, local references in objects go through them
+    private static String relocationSymbol(ElfModel model, int index) {
+        List<Symbol> symbols = model.getSymbols();
+        if (index == 0 || index >= symbols.size()) {
+            return "*ABS*";
+        }
+        Symbol symbol = symbols.get(index);
+        if (symbol.getType() == 3 && symbol.getShndx() > 0 && symbol.getShndx() < model.getSections().size()) { // Section
+            return model.getSectionName(model.getSections().get(symbol.getShndx()));
+        }
+        return model.getSymbolName(symbol);
     }
 
-    public void parse(PrintWriter out) {
-        try {
-            readElfHeader();
-        } catch (AssertionError e) {
-            out.print("Unsupported file\n");
-            out.print(e.getMessage());
-            return;
+    // Read once per section, the decoder and the rendering share it. Null without --relocations
+    private RelocationIndex relocationsOf(ElfModel model, SectionHeader section) {
+        if (!relocations || section == null) {
+            return null;
         }
-        sectionHeaders = readAllSectionHeaders();
+        return relocationIndexes.computeIfAbsent(section, s -> readRelocations(model, s));
+    }
+
+    private TextDecoder newDecoder(ElfModel model, SectionHeader section) {
+        TextDecoder decoder = new TextDecoder(file, section, model.getInstructionSet());
+        decoder.setRelocations(relocationsOf(model, section));
+        return decoder;
+    }
 
-        SectionHeader symtab = null, textData = null;
-        for (SectionHeader header : sectionHeaders) {
-            if (header.getSh_type() == 2) {
-                symtab = header;
+    InstructionStore readText(ElfModel model) {
+        TextDecoder decoder = newDecoder(model, model.getText());
+        if (recursive) {
+            IntList roots = new IntList();
+            if (model.isInCodeWindow(model.getHeader().E_ENTRY)) {
+                roots.add((int) model.getHeader().E_ENTRY);
             }
-            if (header.getSh_type() == 1 && header.getSh_flags() == 2 + 4) {
-                textData = header;
+            for (int start : functionStarts(model)) {
+                roots.add(start);
             }
+            return decoder.decodeRecursive(roots.toArray(), tags);
         }
+        if (pool == null) {
+            return decoder.decode(tags);
+        }
+        return decoder.decodeParallel(functionStarts(model), pool, tags);
+    }
 
-        Symbol[] symbols = new Symbol[0];
-        if (symtab != null) {
-            symbols = readSymtab(symtab, sectionHeaders[symtab.getSh_link()]);
+    List<InstructionStore> readSections(ElfModel model) {
+        List<Callable<TextDecoder.Chunk>> tasks = new ArrayList<>();
+        for (SectionHeader section : model.getExecutableSections()) {
+            tasks.add(newDecoder(model, section)::decodeSection);
         }
-        AsmCommand[] text = new AsmCommand[0];
-        if (textData != null) {
-            text = readText(textData);
+        return decodeAll(tasks);
+    }
+
+    // Executable PT_LOAD segments with bytes in the file, sorted by address
+    static List<ProgramHeader> executableSegments(List<ProgramHeader> programHeaders) {
+        List<ProgramHeader> segments = new ArrayList<>();
+        for (ProgramHeader segment : programHeaders) {
+            if (segment.isExecutableLoad() && segment.getP_file_size() > 0) {
+                segments.add(segment);
+            }
         }
+        segments.sort((a, b) -> Long.compareUnsigned(a.getFullAddress(), b.getFullAddress()));
+        return segments;
+    }
 
-        for (AsmCommand cmd : text) {
-            String tag = "";
-            if (tags.containsKey(cmd.getAddress())) {
-                tag = tags.get(cmd.getAddress());
+    // Linkers map the ELF and program headers to the start of the first segment, those bytes are
+    // skipped. The sweep is put back in sync at E_ENTRY. A recursive decoding follows control flow
+    // from the entry point and function symbols instead
+    List<InstructionStore> readSegments(ElfModel model, List<ProgramHeader> segments) {
+        ElfHeader header = model.getHeader();
+        long headersEnd = header.PROGRAM_HEADERS_OFFSET
+                + (long) header.E_PROGRAM_HEADERS_NUMBER * header.E_PROGRAM_HEADER_SIZE;
+        int entry = (int) header.E_ENTRY;
+        // Like sections, all segments must lie in the 4 GB window of the code
+        long window = segments.isEmpty() ? model.getCodeWindow() : segments.get(0).getFullAddress() >>> 32;
+        Assert.ensure(model.getExecutableSections().isEmpty() || window == model.getCodeWindow(),
+                "Segments and sections with code are in different 4 GB windows");
+        List<TextDecoder> decoders = new ArrayList<>();
+        for (ProgramHeader segment : segments) {
+            Assert.ensure(ElfModel.isInWindow(segment.getFullAddress(), segment.getP_file_size(), window),
+                    "Segment at 0x%s crosses a 4 GB boundary or lies in another 4 GB window than the rest",
+                    Long.toHexString(segment.getFullAddress()));
+            long start = Math.max(segment.getP_offset(), header.E_ELF_HEADER_SIZE);
+            if (header.PROGRAM_HEADERS_OFFSET <= start && start < headersEnd) {
+                start = headersEnd;
             }
-            cmd.setTag(tag);
+            int skip = (int) Math.min(start - segment.getP_offset(), segment.getP_file_size());
+            skip = Math.min(skip + (skip & 1), segment.getP_file_size());
+            decoders.add(new TextDecoder(file, segment.getP_offset() + skip, segment.getP_file_size() - skip,
+                    segment.getAddress() + skip, model.getInstructionSet(), "segment"));
         }
+        boolean entryInWindow = header.E_ENTRY >>> 32 == window;
+        if (!recursive) {
+            List<Callable<TextDecoder.Chunk>> tasks = new ArrayList<>();
+            for (TextDecoder decoder : decoders) {
+                tasks.add(entryInWindow ? () -> decoder.decodeSection(entry) : decoder::decodeSection);
+            }
+            return decodeAll(tasks);
+        }
+        IntList roots = new IntList();
+        if (entryInWindow) {
+            roots.add(entry);
+        }
+        for (int start : functionStarts(model)) {
+            roots.add(start);
+        }
+        List<InstructionStore> stores = new ArrayList<>();
+        for (TextDecoder decoder : decoders) {
+            stores.add(decoder.decodeRecursive(roots.toArray(), tags));
+        }
+        return stores;
+    }
 
-        out.println(".text");
-        for (AsmCommand cmd : text) {
-            out.print(cmd);
+    // One task per section or segment on the pool, or on the common pool without --parallel. Targets become
+    // labels after all tasks are done, in address order like a sweep over the whole file would add them
+    private List<InstructionStore> decodeAll(List<Callable<TextDecoder.Chunk>> tasks) {
+        List<Future<TextDecoder.Chunk>> chunks = (pool == null ? ForkJoinPool.commonPool() : pool).invokeAll(tasks);
+        List<InstructionStore> stores = new ArrayList<>(chunks.size());
+        for (Future<TextDecoder.Chunk> future : chunks) {
+            TextDecoder.Chunk chunk;
+            try {
+                chunk = future.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof Error error) {
+                    throw error;
+                }
+                throw (RuntimeException) e.getCause();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+            for (int i = 0; i < chunk.targets.size(); i++) {
+                tags.putGenerated(chunk.targets.get(i));
+            }
+            stores.add(chunk.store);
+        }
+        return stores;
+    }
+
+    // Functions in the 4 GB window of the code, the others would alias addresses in it
+    private static int[] functionStarts(ElfModel model) {
+        IntList functionStarts = new IntList();
+        for (Symbol symbol : model.getSymbols()) {
+            if (symbol.getType() == 2 && model.isInCodeWindow(symbol.getFullValue())) { // Function
+                functionStarts.add(symbol.getValue());
+            }
+        }
+        return functionStarts.toArray();
+    }
+
+    public CallGraph readCallGraph(ElfModel model, ForkJoinPool pool) {
+        InstructionStore text = model.getText() == null
+                ? new InstructionStore() : readText(model);
+        return new CallGraph(text, model, pool);
+    }
+
+    // Call graph of the file parse printed, from the .text it decoded. Sections, segments and the
+    // pipeline keep no whole .text, so it is read again with the same settings
+    public CallGraph getCallGraph(ForkJoinPool pool) {
+        ElfModel model = parsedModel == null ? readModel() : parsedModel;
+        return parsedText == null ? readCallGraph(model, pool) : new CallGraph(parsedText, model, pool);
+    }
+
+    // Basic blocks of .text, every FUNC symbol starts a function
+    public ControlFlowGraph readControlFlowGraph(ElfModel model) {
+        InstructionStore text = model.getText() == null
+                ? new InstructionStore() : readText(model);
+        return new ControlFlowGraph(text, functionStarts(model), model.getInstructionSet());
+    }
+
+    private InstructionStore decodeText(ElfModel model) {
+        if (cache == null) {
+            return readText(model);
+        }
+        String key = DisassemblyCache.key(model);
+        DisassemblyCache.Entry entry = cache.get(key);
+        if (entry != null) {
+            tags = entry.labels;
+            return entry.store;
+        }
+        DisassemblyCache.Entry base = previous == null || previous.getText() == null
+                ? null : cache.get(DisassemblyCache.key(previous));
+        InstructionStore text = base == null
+                ? readText(model)
+                : readTextIncremental(model, base);
+        cache.put(key, text, tags);
+        return text;
+    }
+
+    // Functions are matched with the previous build by name, names used more than once are skipped
+    private InstructionStore readTextIncremental(ElfModel model, DisassemblyCache.Entry base) {
+        Map<String, Integer> previousStarts = new HashMap<>();
+        Set<String> duplicates = new HashSet<>();
+        base.labels.forEachSymbol((address, id) -> {
+            String name = base.labels.getName(id);
+            if (previousStarts.putIfAbsent(name, address) != null) {
+                duplicates.add(name);
+            }
+        });
+        previousStarts.keySet().removeAll(duplicates);
+        IntList functionStarts = new IntList();
+        IntIntMap previousIndex = new IntIntMap();
+        for (Symbol symbol : model.getSymbols()) {
+            if (symbol.getType() == 2 && model.isInCodeWindow(symbol.getFullValue())) { // Function
+                functionStarts.add(symbol.getValue());
+                Integer start = previousStarts.get(model.getSymbolName(symbol));
+                int index = start == null ? -1 : base.store.indexOf(start);
+                if (index >= 0) {
+                    previousIndex.put(symbol.getValue(), index);
+                }
+            }
+        }
+        return new TextDecoder(file, model.getText(), model.getInstructionSet())
+                .decodeIncremental(functionStarts.toArray(), previousIndex,
+                        new TextDecoder(previous.getFile(), previous.getText(), previous.getInstructionSet()),
+                        base.store, tags);
+    }
+
+    // Null without --fold. Labels must be assigned first, JALR targets inside text get new ones
+    AddressFolder foldAddresses(ElfModel model, InstructionStore text) {
+        if (!fold) {
+            return null;
+        }
+        AddressFolder folds = new AddressFolder(text, model.getInstructionSet());
+        for (int f = 0; f < folds.size(); f++) {
+            int index = (folds.getKind(f) & AddressFolder.JUMP) == 0 ? -1 : text.indexOf(folds.getAddress(f));
+            if (index >= 0 && text.getLabel(index) == InstructionStore.NO_LABEL) {
+                text.setLabel(index, tags.putGenerated(folds.getAddress(f)));
+            }
+        }
+        return folds;
+    }
+
+    // "  # 0x<address> <name>", where name is the label at the address or the symbol covering it
+    private void appendFold(StringBuilder lines, ElfModel model, AddressFolder folds, int fold,
+                            boolean wide, long base) {
+        int address = folds.getAddress(fold);
+        lines.setLength(lines.length() - 1);
+        lines.append("  # 0x");
+        if (!wide) {
+            Renderer.appendHex(lines, address);
+        } else if ((folds.getKind(fold) & AddressFolder.ABSOLUTE) != 0) {
+            Renderer.appendHex(lines, (long) address); // LUI results are sign-extended on RV64
+        } else {
+            Renderer.appendHex(lines, base + (address - (int) base));
+        }
+        String name = tags.getNameAt(address);
+        if (name == null && model.getStringTable() != null) {
+            int symbol = model.getSymbolIndex().containing(address);
+            if (symbol != SymbolIndex.NONE) {
+                Symbol s = model.getSymbols().get(symbol);
+                name = model.getSymbolName(s);
+                if (address != s.getValue()) {
+                    name += "+0x" + Integer.toHexString(address - s.getValue());
+                }
+            }
+        }
+        if (name != null && !name.isEmpty()) {
+            lines.append(" <").append(name).append('>');
+        }
+        lines.append('\n');
+    }
+
+    void assignLabels(InstructionStore text) {
+        for (int i = 0; i < text.size(); i++) {
+            text.setLabel(i, tags.get(text.getAddress(i)));
+        }
+    }
+
+    // Labels must be assigned first
+    void printText(InstructionStore text, PrintWriter out) {
+        printText(text, Decoder.XLEN32, false, 0, null, null, null, out);
+    }
+
+    // Addresses in the store are the low 32 bits of the real ones. For ELF64 lines get the full
+    // address back from base, the full address of the section or segment
+    private void printText(InstructionStore text, InstructionSet isa, boolean wide, long base,
+                           RelocationIndex relocations, ElfModel model, AddressFolder folds, PrintWriter out) {
+        int fold = 0;
+        StringBuilder lines = new StringBuilder(FLUSH_SIZE + 256);
+        DecodedInstruction cmd = new DecodedInstruction();
+        Metrics.Tally tally = metrics == null ? null : metrics.newTally();
+        for (int i = 0; i < text.size(); i++) {
+            isa.decode(text.getRaw(i), text.getAddress(i), cmd);
+            if (tally != null) {
+                tally.count(text.getRaw(i), cmd.mnemonic);
+            }
+            int label = text.getLabel(i);
+            String tag = label == InstructionStore.NO_LABEL ? "" : tags.getName(label);
+            int relocation = relocations == null ? IntIntMap.NO_VALUE : relocations.find(cmd.address);
+            if (relocation != IntIntMap.NO_VALUE) {
+                long address = wide ? base + (cmd.address - (int) base) : cmd.address;
+                Renderer.appendRelocated(lines, cmd, address, wide, tag, relocations, relocation, tags);
+            } else if (!wide) {
+                Renderer.appendInstruction(lines, cmd, tag, tags);
+            } else {
+                long address = base + (cmd.address - (int) base);
+                Renderer.appendInstruction(lines, cmd, address, tag, tags);
+            }
+            if (folds != null && fold < folds.size() && folds.getIndex(fold) == i) {
+                appendFold(lines, model, folds, fold++, wide, base);
+            }
+            if (lines.length() >= FLUSH_SIZE) {
+                out.append(lines);
+                lines.setLength(0);
+            }
+        }
+        out.append(lines);
+        if (tally != null) {
+            tally.flush();
+        }
+    }
+
+    // A header line with the section name, or "segment <index>", before every section or segment.
+    // Files without executable code get an empty .text like the default output. False when the
+    // sections or segments can't be decoded, nothing is printed then but the reason
+    private boolean printSections(ElfModel model, long time, PrintWriter out) {
+        List<String> names = new ArrayList<>();
+        List<Long> bases = new ArrayList<>();
+        List<RelocationIndex> indexes = new ArrayList<>();
+        List<InstructionStore> stores;
+        try {
+            if (segments) {
+                List<ProgramHeader> all = List.of(readAllProgramHeaders(model.getHeader()));
+                List<ProgramHeader> loads = executableSegments(all);
+                stores = readSegments(model, loads);
+                for (ProgramHeader segment : loads) {
+                    names.add("segment " + all.indexOf(segment));
+                    bases.add(segment.getFullAddress());
+                    indexes.add(null);
+                }
+            } else {
+                stores = readSections(model);
+                for (SectionHeader section : model.getExecutableSections()) {
+                    names.add(model.getSectionName(section));
+                    bases.add(section.getFullAddress());
+                    indexes.add(relocationsOf(model, section));
+                }
+            }
+        } catch (AssertionError e) {
+            unsupported(out, e);
+            return false;
+        }
+        time = lap(Metrics.Stage.DECODE, time);
+        List<AddressFolder> folds = new ArrayList<>();
+        for (InstructionStore store : stores) {
+            assignLabels(store);
+            folds.add(foldAddresses(model, store));
+        }
+        time = lap(Metrics.Stage.LABELS, time);
+        if (names.isEmpty()) {
+            out.println(".text");
+        }
+        boolean wide = model.getHeader().is64();
+        for (int s = 0; s < names.size(); s++) {
+            if (s > 0) {
+                out.println();
+            }
+            out.println(names.get(s));
+            printText(stores.get(s), model.getInstructionSet(), wide, bases.get(s), indexes.get(s), model,
+                    folds.get(s), out);
+        }
+        lap(Metrics.Stage.RENDER, time);
+        return true;
+    }
+
+    private static void unsupported(PrintWriter out, AssertionError e) {
+        out.print("Unsupported file\n");
+        out.print(e.getMessage());
+    }
+
+    public void parse(PrintWriter out) {
+        long time = 0;
+        if (metrics != null) {
+            metrics.addFile(file.size());
+            time = System.nanoTime();
+        }
+        // Headers, sections and symbols that make no sense, or code this parser can't address
+        ElfModel model;
+        try {
+            model = readModel();
+        } catch (AssertionError e) {
+            unsupported(out, e);
+            return;
+        }
+        parsedModel = model;
+        time = lap(Metrics.Stage.MODEL, time);
+        addSymbolLabels(model);
+        time = lap(Metrics.Stage.LABELS, time);
+        SectionHeader textData = model.getText();
+
+        if (allSections || segments) {
+            if (!printSections(model, time, out)) {
+                return;
+            }
+            time = metrics == null ? 0 : System.nanoTime();
+        } else if (pipelineThreads > 0) {
+            out.println(".text");
+            if (textData != null) {
+                TextPipeline pipeline = new TextPipeline(file, textData, model.getInstructionSet(), tags,
+                        pipelineThreads, 2 * pipelineThreads);
+                pipeline.setMetrics(metrics);
+                pipeline.run(out);
+            }
+            time = metrics == null ? 0 : System.nanoTime(); // The pipeline times its own stages
+        } else {
+            out.println(".text");
+            InstructionStore text = new InstructionStore();
+            if (textData != null) {
+                text = decodeText(model);
+            }
+            parsedText = text;
+            time = lap(Metrics.Stage.DECODE, time);
+            assignLabels(text);
+            AddressFolder folds = foldAddresses(model, text);
+            time = lap(Metrics.Stage.LABELS, time);
+            boolean wide = model.getHeader().is64() && textData != null;
+            printText(text, model.getInstructionSet(), wide, wide ? textData.getFullAddress() : 0,
+                    relocationsOf(model, textData), model, folds, out);
+            time = lap(Metrics.Stage.RENDER, time);
+        }
+        if (metrics != null) {
+            metrics.addLabelsGenerated(tags.getGeneratedCount());
         }
         out.println();
         out.println(".symtab");
         out.print(String.format("%s %-15s %7s %-8s %-8s %-8s %6s %s\n",
                 "Symbol", "Value", "Size", "Type", "Bind", "Vis", "Index", "Name"));
-        for (Symbol s : symbols) {
-            out.print(s.getStringRepresentation(sectionHeaders[symtab.getSh_link()], file));
+        for (Symbol s : model.getSymbols()) {
+            out.print(s.getStringRepresentation(model.getStringTable()));
         }
+        lap(Metrics.Stage.SYMTAB, time);
     }
 }
@@ -1,27 +1,36 @@
 package project;
 
 import java.io.IOException;
-import java.nio.file.Files;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 
 public class ElfReader {
-    private byte[] text;
+    private ByteBuffer data;
 
     ElfReader(String path) {
         try {
-            text = Files.readAllBytes(Paths.get(path));
+            data = map(Paths.get(path));
         } catch (IOException e) {
             System.err.println("Couldn't read file");
             System.err.println(e.getMessage());
             System.exit(1);
-        } catch (OutOfMemoryError e) {
-            System.err.println("File is too big or not enough memory was provided");
-            System.err.println(e.getMessage());
-            System.exit(1);
         }
     }
 
-    public byte[] getText() {
-        return text;
+    public static ByteBuffer map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("File is too big to be mapped: " + path);
+            }
+            // Pages are loaded lazily, only the ones the parser touches are read from disk
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    public ByteBuffer getData() {
+        return data;
     }
 }
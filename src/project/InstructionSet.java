@@ -0,0 +1,12 @@
+package project;
+
+// Decoding for one register width. A file is either RV32 or RV64, so every call site only ever sees
+// one implementation and the JIT inlines it as if Decoder were called directly.
+public interface InstructionSet {
+    int getXlen();
+
+    void decode(int inst, int address, DecodedInstruction out);
+
+    // Same as decode(...).hasTarget without touching the tables
+    boolean hasTarget(int inst);
+}
@@ -0,0 +1,163 @@
+package project;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+public class InstructionStore {
+    public static final int NO_LABEL = LabelTable.NO_LABEL;
+
+    private int[] raw;
+    private int[] addresses;
+    private byte[] lengths;
+    private int[] labels;
+    private int size;
+
+    public InstructionStore() {
+        this(16);
+    }
+
+    public InstructionStore(int capacity) {
+        capacity = Math.max(capacity, 1);
+        raw = new int[capacity];
+        addresses = new int[capacity];
+        lengths = new byte[capacity];
+        labels = new int[capacity];
+    }
+
+    // Cache layout: size, raw[size], addresses[size], lengths[size]. Labels are not stored,
+    // they come from the LabelTable saved next to the store
+    long serializedSize() {
+        return 4 + 9L * size;
+    }
+
+    void writeTo(ByteBuffer out) {
+        out.putInt(size);
+        out.asIntBuffer().put(raw, 0, size);
+        out.position(out.position() + 4 * size);
+        out.asIntBuffer().put(addresses, 0, size);
+        out.position(out.position() + 4 * size);
+        out.put(lengths, 0, size);
+    }
+
+    static InstructionStore readFrom(ByteBuffer in) {
+        int size = in.getInt();
+        Assert.ensure(size >= 0 && in.remaining() >= 9L * size, "Instruction store of %s entries is truncated", size);
+        InstructionStore store = new InstructionStore(size);
+        in.asIntBuffer().get(store.raw, 0, size);
+        in.position(in.position() + 4 * size);
+        in.asIntBuffer().get(store.addresses, 0, size);
+        in.position(in.position() + 4 * size);
+        in.get(store.lengths, 0, size);
+        Arrays.fill(store.labels, 0, size, NO_LABEL);
+        store.size = size;
+        return store;
+    }
+
+    public void add(int inst, int address, int length) {
+        if (size == raw.length) {
+            grow(size + (size >> 1) + 1);
+        }
+        raw[size] = inst;
+        addresses[size] = address;
+        lengths[size] = (byte) length;
+        labels[size] = NO_LABEL;
+        size++;
+    }
+
+    public void addAll(InstructionStore other) {
+        if (size + other.size > raw.length) {
+            grow(size + other.size);
+        }
+        System.arraycopy(other.raw, 0, raw, size, other.size);
+        System.arraycopy(other.addresses, 0, addresses, size, other.size);
+        System.arraycopy(other.lengths, 0, lengths, size, other.size);
+        System.arraycopy(other.labels, 0, labels, size, other.size);
+        size += other.size;
+    }
+
+    // Appends count entries of other starting at from, moved by delta bytes. Labels are reset
+    public void addShifted(InstructionStore other, int from, int count, int delta) {
+        if (size + count > raw.length) {
+            grow(Math.max(size + count, size + (size >> 1) + 1));
+        }
+        System.arraycopy(other.raw, from, raw, size, count);
+        System.arraycopy(other.lengths, from, lengths, size, count);
+        for (int i = 0; i < count; i++) {
+            addresses[size + i] = other.addresses[from + i] + delta;
+        }
+        Arrays.fill(labels, size, size + count, NO_LABEL);
+        size += count;
+    }
+
+    private void grow(int capacity) {
+        raw = Arrays.copyOf(raw, capacity);
+        addresses = Arrays.copyOf(addresses, capacity);
+        lengths = Arrays.copyOf(lengths, capacity);
+        labels = Arrays.copyOf(labels, capacity);
+    }
+
+    public void trim() {
+        if (size != raw.length) {
+            grow(size);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getRaw(int index) {
+        return raw[index];
+    }
+
+    public int getAddress(int index) {
+        return addresses[index];
+    }
+
+    public int getLength(int index) {
+        return lengths[index];
+    }
+
+    public int getLabel(int index) {
+        return labels[index];
+    }
+
+    public void setLabel(int index, int label) {
+        labels[index] = label;
+    }
+
+    // First instruction at or after address, size() if there is none
+    public int ceilingIndex(int address) {
+        int key = address ^ Integer.MIN_VALUE;
+        int l = 0;
+        int r = size;
+        while (l < r) {
+            int m = (l + r) >>> 1;
+            if ((addresses[m] ^ Integer.MIN_VALUE) < key) {
+                l = m + 1;
+            } else {
+                r = m;
+            }
+        }
+        return l;
+    }
+
+    // Addresses grow monotonically, they are compared as unsigned 32-bit values
+    public int indexOf(int address) {
+        int key = address ^ Integer.MIN_VALUE;
+        int l = 0;
+        int r = size - 1;
+        while (l <= r) {
+            int m = (l + r) >>> 1;
+            int value = addresses[m] ^ Integer.MIN_VALUE;
+            if (value < key) {
+                l = m + 1;
+            } else if (value > key) {
+                r = m - 1;
+            } else {
+                return m;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,168 @@
+package project;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// Address -> label id, where the id points into a pool of distinct names.
+// Symbol names and generated LOC_ labels share the same table.
+public class LabelTable {
+    public static final int NO_LABEL = IntIntMap.NO_VALUE;
+
+    private final IntIntMap byAddress;
+    private final Map<String, Integer> pool = new HashMap<>();
+    private String[] names = new String[16];
+    // LOC_ number of a generated label, its name is only built when somebody asks for it
+    private int[] generatedNumbers = new int[16];
+    private int namesCount;
+    private int generated;
+
+    public LabelTable() {
+        this(16);
+    }
+
+    public LabelTable(int expectedSize) {
+        byAddress = new IntIntMap(expectedSize);
+    }
+
+    private int addName(String name, int generatedNumber) {
+        if (namesCount == names.length) {
+            names = Arrays.copyOf(names, namesCount * 2);
+            generatedNumbers = Arrays.copyOf(generatedNumbers, namesCount * 2);
+        }
+        names[namesCount] = name;
+        generatedNumbers[namesCount] = generatedNumber;
+        return namesCount++;
+    }
+
+    private int intern(String name) {
+        Integer id = pool.get(name);
+        if (id == null) {
+            id = addName(name, -1);
+            pool.put(name, id);
+        }
+        return id;
+    }
+
+    // Symbol labels replace whatever was known for the address before
+    public int put(int address, String name) {
+        int id = intern(name);
+        byAddress.put(address, id);
+        return id;
+    }
+
+    // Generated labels never override an existing one
+    public int putGenerated(int address) {
+        int id = byAddress.get(address);
+        if (id == NO_LABEL) {
+            id = addName(null, generated++);
+            byAddress.put(address, id);
+        }
+        return id;
+    }
+
+    public int get(int address) {
+        return byAddress.get(address);
+    }
+
+    // Builds and keeps the name of a generated label on first use. That write isn't synchronized,
+    // threads that render at the same time must call resolveNames first
+    public String getName(int id) {
+        String name = names[id];
+        if (name == null) {
+            name = String.format("LOC_%05x", generatedNumbers[id]);
+            names[id] = name;
+        }
+        return name;
+    }
+
+    // Every name built, getName only reads from here on
+    public void resolveNames() {
+        for (int id = 0; id < namesCount; id++) {
+            getName(id);
+        }
+    }
+
+    public String getNameAt(int address) {
+        int id = byAddress.get(address);
+        return id == NO_LABEL ? null : getName(id);
+    }
+
+    // Address and id of every label that came from a symbol rather than a jump target
+    public void forEachSymbol(IntIntMap.Visitor visitor) {
+        byAddress.forEach((address, id) -> {
+            if (generatedNumbers[id] < 0) {
+                visitor.accept(address, id);
+            }
+        });
+    }
+
+    public int size() {
+        return byAddress.size();
+    }
+
+    public int getGeneratedCount() {
+        return generated;
+    }
+
+    // Cache layout: names count, generated count, every name as its LOC_ number or -1 followed
+    // by the symbol name chars, then the address -> id pairs. Ids and LOC_ numbers are kept as is
+    long serializedSize() {
+        long bytes = 4 + 4 + 4 + 8L * byAddress.size();
+        for (int id = 0; id < namesCount; id++) {
+            bytes += generatedNumbers[id] < 0 ? 8 + 2L * names[id].length() : 4;
+        }
+        return bytes;
+    }
+
+    void writeTo(ByteBuffer out) {
+        out.putInt(namesCount);
+        out.putInt(generated);
+        for (int id = 0; id < namesCount; id++) {
+            out.putInt(generatedNumbers[id]);
+            if (generatedNumbers[id] < 0) {
+                out.putInt(names[id].length());
+                for (int i = 0; i < names[id].length(); i++) {
+                    out.putChar(names[id].charAt(i));
+                }
+            }
+        }
+        out.putInt(byAddress.size());
+        byAddress.forEach((address, id) -> out.putInt(address).putInt(id));
+    }
+
+    static LabelTable readFrom(ByteBuffer in) {
+        int namesCount = in.getInt();
+        int generated = in.getInt();
+        Assert.ensure(namesCount >= 0 && generated >= 0 && namesCount <= in.remaining() / 4,
+                "Label table of %s names is truncated", namesCount);
+        LabelTable table = new LabelTable();
+        for (int id = 0; id < namesCount; id++) {
+            int number = in.getInt();
+            if (number >= 0) {
+                table.addName(null, number);
+            } else {
+                int length = in.getInt();
+                Assert.ensure(length >= 0 && length <= in.remaining() / 2, "Label name of %s chars is truncated",
+                        length);
+                char[] name = new char[length];
+                in.asCharBuffer().get(name);
+                in.position(in.position() + 2 * name.length);
+                String symbol = new String(name);
+                table.pool.putIfAbsent(symbol, table.addName(symbol, -1));
+            }
+        }
+        table.generated = generated;
+        int addresses = in.getInt();
+        Assert.ensure(addresses >= 0 && addresses <= in.remaining() / 8, "Label table of %s addresses is truncated",
+                addresses);
+        for (int i = 0; i < addresses; i++) {
+            int address = in.getInt();
+            int id = in.getInt();
+            Assert.ensure(id >= 0 && id < namesCount, "Label id %s is out of range", id);
+            table.byAddress.put(address, id);
+        }
+        return table;
+    }
+}
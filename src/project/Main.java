@@ -1,17 +1,127 @@
 package project;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
 
 public class Main {
+    private static final int OUTPUT_BUFFER_SIZE = 1 << 20;
+
     public static void main(String[] args) {
-        ElfReader reader = new ElfReader(args[0]);
-        ElfParser parser = new ElfParser(reader.getText());
-        try (PrintWriter out = new PrintWriter(args[1], StandardCharsets.UTF_8)) {
+        Options options;
+        try {
+            options = Options.parse(args);
+        } catch (AssertionError e) {
+            System.err.println(e.getMessage());
+            System.err.println(Options.usage());
+            System.exit(1);
+            return;
+        }
+        Metrics metrics = options.metrics == null ? null : new Metrics();
+        if (options.batch) {
+            boolean ok = new Batch(options, metrics).run();
+            writeMetrics(metrics, options);
+            System.exit(ok ? 0 : 1);
+        }
+        ElfReader reader = new ElfReader(options.input);
+        ElfParser parser = createParser(reader.getData(), options, metrics);
+        if (options.since != null) {
+            try {
+                parser.setPrevious(new ElfParser(new ElfReader(options.since).getData()).readModel());
+            } catch (AssertionError e) {
+                System.err.println("Ignoring --since, previous build is not supported: " + e.getMessage());
+            }
+        }
+        try (PrintWriter out = openOutput(Paths.get(options.output))) {
             parser.parse(out);
         } catch (IOException e) {
             System.err.println("Problems with file");
         }
+        if (options.callGraph != null || options.callGraphEdges != null) {
+            writeCallGraph(parser, options);
+        }
+        writeMetrics(metrics, options);
+    }
+
+    private static void writeMetrics(Metrics metrics, Options options) {
+        if (metrics == null) {
+            return;
+        }
+        try (PrintWriter out = openOutput(Paths.get(options.metrics))) {
+            if (options.prometheus) {
+                metrics.writePrometheus(out);
+            } else {
+                metrics.writeJson(out);
+            }
+        } catch (IOException e) {
+            System.err.println("Problems with metrics file");
+        }
+    }
+
+    private static void writeCallGraph(ElfParser parser, Options options) {
+        CallGraph graph;
+        try {
+            graph = parser.getCallGraph(ForkJoinPool.commonPool());
+        } catch (AssertionError e) {
+            System.err.println("Couldn't build the call graph: " + e.getMessage());
+            return;
+        }
+        try {
+            if (options.callGraph != null) {
+                try (PrintWriter out = openOutput(Paths.get(options.callGraph))) {
+                    graph.writeDot(out);
+                }
+            }
+            if (options.callGraphEdges != null) {
+                graph.writeEdges(Paths.get(options.callGraphEdges));
+            }
+        } catch (IOException e) {
+            System.err.println("Problems with call graph file");
+        }
+    }
+
+    static ElfParser createParser(ByteBuffer data, Options options, Metrics metrics) {
+        ElfParser parser = new ElfParser(data);
+        parser.setMetrics(metrics);
+        if (options.parallel) {
+            parser.setParallel(ForkJoinPool.commonPool());
+        }
+        if (options.pipeline) {
+            parser.setPipeline(Runtime.getRuntime().availableProcessors());
+        }
+        if (options.recursive) {
+            parser.setRecursive(true);
+        }
+        if (options.allSections) {
+            parser.setAllSections(true);
+        }
+        if (options.segments) {
+            parser.setSegments(true);
+        }
+        if (options.relocations) {
+            parser.setRelocations(true);
+        }
+        if (options.fold) {
+            parser.setFold(true);
+        }
+        if (options.cache != null) {
+            parser.setCache(new DisassemblyCache(Paths.get(options.cache), options.cacheLimit));
+        }
+        return parser;
+    }
+
+    static PrintWriter openOutput(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        return new PrintWriter(new BufferedWriter(
+                Channels.newWriter(channel, StandardCharsets.UTF_8), OUTPUT_BUFFER_SIZE));
     }
 }
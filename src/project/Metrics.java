@@ -0,0 +1,171 @@
+package project;
+
+import java.io.PrintWriter;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+// Counters and stage timers of ElfParser runs. Every counter is a LongAdder, so parsers on many
+// threads (--parallel, --pipeline, --batch) can share one instance. Parsers without metrics keep a
+// null reference and skip all of this. Instruction counts come from rendering, which decodes every
+// instruction exactly once whatever mode produced the store.
+public final class Metrics {
+    public enum Stage {
+        MODEL("model"), // ELF header, section headers and .symtab
+        DECODE("decode"), // .text sweep, cache lookup or incremental decode
+        LABELS("labels"), // Symbol labels and attaching labels to instructions
+        RENDER("render"), // .text lines
+        SYMTAB("symtab"); // .symtab lines
+
+        private final String text;
+
+        Stage(String text) {
+            this.text = text;
+        }
+    }
+
+    // Indexed by the two low bits of an instruction
+    private static final String[] TYPES = {"COMPRESSED_Q0", "COMPRESSED_Q1", "COMPRESSED_Q2", "RV32"};
+
+    private final LongAdder files = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder labelsGenerated = new LongAdder();
+    private final LongAdder unknown = new LongAdder();
+    private final LongAdder[] types = newAdders(TYPES.length);
+    private final LongAdder[] mnemonics = newAdders(Mnemonic.VALUES.length);
+    private final LongAdder[] stageNanos = newAdders(Stage.values().length);
+
+    private static LongAdder[] newAdders(int n) {
+        LongAdder[] adders = new LongAdder[n];
+        for (int i = 0; i < n; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    // Per-thread counts of one rendering pass, added to the shared counters once at the end
+    public final class Tally {
+        private final long[] types = new long[TYPES.length];
+        private final long[] mnemonics = new long[Mnemonic.VALUES.length];
+
+        public void count(int inst, Mnemonic mnemonic) {
+            types[inst & 0b11]++;
+            mnemonics[mnemonic.ordinal()]++;
+        }
+
+        public void flush() {
+            for (int i = 0; i < types.length; i++) {
+                Metrics.this.types[i].add(types[i]);
+                types[i] = 0;
+            }
+            for (int i = 0; i < mnemonics.length; i++) {
+                if (mnemonics[i] != 0) {
+                    Metrics.this.mnemonics[i].add(mnemonics[i]);
+                    if (Mnemonic.VALUES[i].isUnknown()) {
+                        unknown.add(mnemonics[i]);
+                    }
+                    mnemonics[i] = 0;
+                }
+            }
+        }
+    }
+
+    public Tally newTally() {
+        return new Tally();
+    }
+
+    public void addFile(long bytes) {
+        files.increment();
+        bytesRead.add(bytes);
+    }
+
+    public void addLabelsGenerated(long count) {
+        labelsGenerated.add(count);
+    }
+
+    public void addStage(Stage stage, long nanos) {
+        stageNanos[stage.ordinal()].add(nanos);
+    }
+
+    public long getInstructions() {
+        long sum = 0;
+        for (LongAdder type : types) {
+            sum += type.sum();
+        }
+        return sum;
+    }
+
+    public long getUnknown() {
+        return unknown.sum();
+    }
+
+    public long getStageNanos(Stage stage) {
+        return stageNanos[stage.ordinal()].sum();
+    }
+
+    public void writeJson(PrintWriter out) {
+        out.print("{\n");
+        out.print("  \"files\": " + files.sum() + ",\n");
+        out.print("  \"bytes_read\": " + bytesRead.sum() + ",\n");
+        out.print("  \"instructions\": " + getInstructions() + ",\n");
+        out.print("  \"unknown_instructions\": " + unknown.sum() + ",\n");
+        out.print("  \"labels_generated\": " + labelsGenerated.sum() + ",\n");
+        out.print("  \"instructions_by_type\": {");
+        for (int i = 0; i < TYPES.length; i++) {
+            out.print((i == 0 ? "" : ",") + "\n    \"" + TYPES[i] + "\": " + types[i].sum());
+        }
+        out.print("\n  },\n");
+        out.print("  \"instructions_by_mnemonic\": {");
+        String separator = "";
+        for (Mnemonic mnemonic : Mnemonic.VALUES) {
+            long count = mnemonics[mnemonic.ordinal()].sum();
+            if (count != 0) {
+                out.print(separator + "\n    \"" + mnemonic.getText() + "\": " + count);
+                separator = ",";
+            }
+        }
+        out.print("\n  },\n");
+        out.print("  \"stage_nanos\": {");
+        for (Stage stage : Stage.values()) {
+            out.print((stage.ordinal() == 0 ? "" : ",") + "\n    \"" + stage.text + "\": " + getStageNanos(stage));
+        }
+        out.print("\n  }\n");
+        out.print("}\n");
+    }
+
+    // Prometheus text exposition format, version 0.0.4
+    public void writePrometheus(PrintWriter out) {
+        counter(out, "disassembler_files_total", "ELF files parsed", files.sum());
+        counter(out, "disassembler_bytes_read_total", "Bytes of input files", bytesRead.sum());
+        counter(out, "disassembler_unknown_instructions_total", "Encodings without a known mnemonic",
+                unknown.sum());
+        counter(out, "disassembler_labels_generated_total", "LOC_ labels created for branch targets",
+                labelsGenerated.sum());
+
+        header(out, "disassembler_instructions_total", "Instructions decoded by encoding type");
+        for (int i = 0; i < TYPES.length; i++) {
+            out.print("disassembler_instructions_total{type=\"" + TYPES[i] + "\"} " + types[i].sum() + "\n");
+        }
+        header(out, "disassembler_mnemonic_total", "Instructions decoded by mnemonic");
+        for (Mnemonic mnemonic : Mnemonic.VALUES) {
+            long count = mnemonics[mnemonic.ordinal()].sum();
+            if (count != 0) {
+                out.print("disassembler_mnemonic_total{mnemonic=\"" + mnemonic.getText() + "\"} " + count + "\n");
+            }
+        }
+        header(out, "disassembler_stage_seconds_total", "Time spent in each stage of parsing");
+        for (Stage stage : Stage.values()) {
+            out.print(String.format(Locale.ROOT, "disassembler_stage_seconds_total{stage=\"%s\"} %.9f\n",
+                    stage.text, getStageNanos(stage) / 1e9));
+        }
+    }
+
+    private static void header(PrintWriter out, String name, String help) {
+        out.print("# HELP " + name + " " + help + "\n");
+        out.print("# TYPE " + name + " counter\n");
+    }
+
+    private static void counter(PrintWriter out, String name, String help, long value) {
+        header(out, name, help);
+        out.print(name + " " + value + "\n");
+    }
+}
@@ -0,0 +1,53 @@
+package project;
+
+public enum Mnemonic {
+    LUI("LUI"), AUIPC("AUIPC"), JAL("JAL"), JALR("JALR"),
+    BEQ("BEQ"), BNE("BNE"), BLT("BLT"), BGE("BGE"), BLTU("BLTU"), BGEU("BGEU"),
+    LB("LB"), LH("LH"), LW("LW"), LBU("LBU"), LHU("LHU"),
+    SB("SB"), SH("SH"), SW("SW"),
+    ADDI("ADDI"), SLTI("SLTI"), SLTIU("SLTIU"), XORI("XORI"), ORI("ORI"), ANDI("ANDI"),
+    SLLI("SLLI"), SRLI("SRLI"), SRAI("SRAI"),
+    ADD("ADD"), SUB("SUB"), SLL("SLL"), SLT("SLT"), SLTU("SLTU"),
+    XOR("XOR"), SRL("SRL"), SRA("SRA"), OR("OR"), AND("AND"),
+    ECALL("ECALL"), EBREAK("EBREAK"),
+    CSRRW("CSRRW"), CSRRS("CSRRS"), CSRRC("CSRRC"), CSRRWI("CSRRWI"), CSRRSI("CSRRSI"), CSRRCI("CSRRCI"),
+    MUL("MUL"), MULH("MULH"), MULHSU("MULHSU"), MULHU("MULHU"),
+    DIV("DIV"), DIVU("DIVU"), REM("REM"), REMU("REMU"),
+
+    C_ADDI4SPN("C.ADDI4SPN"), C_LW("C.LW"), C_SW("C.SW"),
+    C_NOP("C.NOP"), C_ADDI("C.ADDI"), C_JAL("C.JAL"), C_LI("C.LI"), C_ADDI16SP("C.ADDI16SP"), C_LUI("C.LUI"),
+    C_SRLI("C.SRLI"), C_SRAI("C.SRAI"), C_ANDI("C.ANDI"),
+    C_SUB("C.SUB"), C_XOR("C.XOR"), C_OR("C.OR"), C_AND("C.AND"),
+    C_J("C.J"), C_BEQZ("C.BEQZ"), C_BNEZ("C.BNEZ"),
+    C_SLLI("C.SLLI"), C_LWSP("C.LWSP"), C_SWSP("C.SWSP"),
+    C_JR("C.JR"), C_MV("C.MV"), C_EBREAK("C.EBREAK"), C_JALR("C.JALR"), C_ADD("C.ADD"),
+
+    // RV64 only
+    LWU("LWU"), LD("LD"), SD("SD"),
+    ADDIW("ADDIW"), SLLIW("SLLIW"), SRLIW("SRLIW"), SRAIW("SRAIW"),
+    ADDW("ADDW"), SUBW("SUBW"), SLLW("SLLW"), SRLW("SRLW"), SRAW("SRAW"),
+    MULW("MULW"), DIVW("DIVW"), DIVUW("DIVUW"), REMW("REMW"), REMUW("REMUW"),
+    C_LD("C.LD"), C_SD("C.SD"), C_ADDIW("C.ADDIW"), C_SUBW("C.SUBW"), C_ADDW("C.ADDW"),
+    C_LDSP("C.LDSP"), C_SDSP("C.SDSP"),
+
+    UNKNOWN("UNKNOWN_COMMAND"),
+    INVALID("INVALID"),
+    Q0_UNKNOWN("Q0 UNKNOWN_COMMAND"),
+    Q2_UNKNOWN("UNKNOWN_COMMAND Q2");
+
+    static final Mnemonic[] VALUES = values();
+
+    private final String text;
+
+    Mnemonic(String text) {
+        this.text = text;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public boolean isUnknown() {
+        return ordinal() >= UNKNOWN.ordinal();
+    }
+}
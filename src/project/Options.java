@@ -0,0 +1,104 @@
+package project;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class Options {
+    String input;
+    String output;
+    boolean parallel;
+    boolean pipeline;
+    boolean batch;
+    boolean recursive;
+    boolean allSections;
+    boolean segments;
+    boolean relocations;
+    boolean fold;
+    String cache;
+    long cacheLimit = DisassemblyCache.DEFAULT_LIMIT;
+    String since;
+    String callGraph;
+    String callGraphEdges;
+    String metrics;
+    boolean prometheus;
+
+    public static String usage() {
+        return "Usage: <ELF file> <output file> [--parallel | --pipeline | --recursive] [--cache <directory> [--cache-limit <MB>] [--since <previous ELF>]]\n" +
+                "       [--all-sections | --segments] [--relocations | --fold] [--call-graph <DOT file>] [--call-graph-edges <binary file>] [--metrics <file> [--metrics-format json | prometheus]]\n" +
+                "       --batch <directory | glob | @manifest> <output directory> [same options]";
+    }
+
+    private static String value(String[] args, int i, String option) {
+        Assert.ensure(i < args.length, "%s needs a value", option);
+        return args[i];
+    }
+
+    public static Options parse(String[] args) {
+        Options options = new Options();
+        List<String> positional = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "--parallel" -> options.parallel = true;
+                case "--pipeline" -> options.pipeline = true;
+                case "--batch" -> options.batch = true;
+                case "--recursive" -> options.recursive = true;
+                case "--all-sections" -> options.allSections = true;
+                case "--segments" -> options.segments = true;
+                case "--relocations" -> options.relocations = true;
+                case "--fold" -> options.fold = true;
+                case "--cache" -> options.cache = value(args, ++i, arg);
+                case "--since" -> options.since = value(args, ++i, arg);
+                case "--call-graph" -> options.callGraph = value(args, ++i, arg);
+                case "--call-graph-edges" -> options.callGraphEdges = value(args, ++i, arg);
+                case "--metrics" -> options.metrics = value(args, ++i, arg);
+                case "--metrics-format" -> {
+                    String format = value(args, ++i, arg);
+                    Assert.ensure(format.equals("json") || format.equals("prometheus"),
+                            "Metrics format must be json or prometheus, got %s", format);
+                    options.prometheus = format.equals("prometheus");
+                }
+                case "--cache-limit" -> {
+                    String limit = value(args, ++i, arg);
+                    try {
+                        options.cacheLimit = Long.parseLong(limit) << 20;
+                    } catch (NumberFormatException e) {
+                        throw new AssertionError("Cache limit must be a number of megabytes, got " + limit);
+                    }
+                }
+                default -> {
+                    Assert.ensure(!arg.startsWith("--"), "Unknown option %s", arg);
+                    positional.add(arg);
+                }
+            }
+        }
+        Assert.ensure(positional.size() == 2, "Expected input and output, got %s arguments",
+                positional.size());
+        Assert.ensure(!(options.parallel && options.pipeline), "--parallel and --pipeline can't be used together");
+        Assert.ensure(!(options.recursive && (options.parallel || options.pipeline)),
+                "--recursive can't be used with --parallel or --pipeline");
+        // Cache entries are keyed by contents only, they always hold a linear sweep
+        Assert.ensure(!(options.recursive && options.cache != null), "--recursive can't be used with --cache");
+        // The pipeline never holds the whole decoded .text, so there is nothing to store
+        Assert.ensure(!(options.cache != null && options.pipeline), "--cache and --pipeline can't be used together");
+        // Pipeline, recursive decoding and the cache all work on .text alone
+        Assert.ensure(!(options.allSections && (options.pipeline || options.recursive || options.cache != null)),
+                "--all-sections can't be used with --pipeline, --recursive or --cache");
+        Assert.ensure(!(options.segments && (options.pipeline || options.cache != null || options.allSections)),
+                "--segments can't be used with --pipeline, --cache or --all-sections");
+        // Cache entries hold labels made without relocations, segments have none
+        Assert.ensure(!(options.relocations && (options.pipeline || options.cache != null || options.segments)),
+                "--relocations can't be used with --pipeline, --cache or --segments");
+        // Addresses in relocatable objects aren't final, the pipeline never holds a whole store to scan
+        Assert.ensure(!(options.fold && (options.relocations || options.pipeline)),
+                "--fold can't be used with --relocations or --pipeline");
+        Assert.ensure(options.since == null || options.cache != null, "--since reads the previous build from --cache");
+        Assert.ensure(options.since == null || !options.batch, "--since can't be used with --batch");
+        Assert.ensure(options.callGraph == null && options.callGraphEdges == null || !options.batch,
+                "Call graphs can't be written in --batch mode");
+        Assert.ensure(!options.prometheus || options.metrics != null, "--metrics-format needs --metrics");
+        options.input = positional.get(0);
+        options.output = positional.get(1);
+        return options;
+    }
+}
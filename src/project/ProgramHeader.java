@@ -0,0 +1,73 @@
+package project;
+
+public final class ProgramHeader {
+    private final int p_type;
+    private final int p_flags;
+    private final int p_offset;
+    private final long p_address; // Unsigned, ELF32 values are zero-extended
+    private final int p_file_size;
+    private final long p_memory_size;
+    private final long p_align;
+
+    public ProgramHeader(int p_type, int p_flags, int p_offset, long p_address, int p_file_size,
+                         long p_memory_size, long p_align) {
+        this.p_type = p_type;
+        this.p_flags = p_flags;
+        this.p_offset = p_offset;
+        this.p_address = p_address;
+        this.p_file_size = p_file_size;
+        this.p_memory_size = p_memory_size;
+        this.p_align = p_align;
+    }
+
+    @Override
+    public String toString() {
+        return "ProgramHeader{" + "\n" +
+                "p_type=" + p_type + "\n" +
+                ", p_flags=" + p_flags + "\n" +
+                ", p_offset=" + p_offset + "\n" +
+                ", p_address=" + p_address + "\n" +
+                ", p_file_size=" + p_file_size + "\n" +
+                ", p_memory_size=" + p_memory_size + "\n" +
+                ", p_align=" + p_align + "\n" +
+                '}' + "\n";
+    }
+
+    // PT_LOAD with PF_X
+    public boolean isExecutableLoad() {
+        return p_type == 1 && (p_flags & 1) != 0;
+    }
+
+    public int getP_type() {
+        return p_type;
+    }
+
+    public int getP_flags() {
+        return p_flags;
+    }
+
+    public int getP_offset() {
+        return p_offset;
+    }
+
+    // Low 32 bits of the virtual address, like SectionHeader.getAddress
+    public int getAddress() {
+        return (int) p_address;
+    }
+
+    public long getFullAddress() {
+        return p_address;
+    }
+
+    public int getP_file_size() {
+        return p_file_size;
+    }
+
+    public long getP_memory_size() {
+        return p_memory_size;
+    }
+
+    public long getP_align() {
+        return p_align;
+    }
+}
@@ -0,0 +1,100 @@
+package project;
+
+import java.util.Arrays;
+
+// Relocations against one section, keyed by the address of the instruction they patch. Only the
+// types that change how an instruction reads are kept. In a relocatable object the immediates of
+// these instructions are zero, the relocation says what they refer to
+public final class RelocationIndex {
+    static final int R_RISCV_BRANCH = 16;
+    static final int R_RISCV_JAL = 17;
+    static final int R_RISCV_CALL = 18;
+    static final int R_RISCV_CALL_PLT = 19;
+    static final int R_RISCV_PCREL_HI20 = 23;
+    static final int R_RISCV_PCREL_LO12_I = 24;
+    static final int R_RISCV_PCREL_LO12_S = 25;
+    static final int R_RISCV_RVC_BRANCH = 44;
+    static final int R_RISCV_RVC_JUMP = 45;
+
+    private final IntIntMap byAddress;
+    private int[] types;
+    private String[] symbols;
+    private long[] addends;
+    private int size;
+
+    public RelocationIndex(int expectedSize) {
+        byAddress = new IntIntMap(expectedSize);
+        types = new int[Math.max(expectedSize, 4)];
+        symbols = new String[types.length];
+        addends = new long[types.length];
+    }
+
+    public static boolean isKnown(int type) {
+        return getTypeName(type) != null;
+    }
+
+    public static String getTypeName(int type) {
+        return switch (type) {
+            case R_RISCV_BRANCH -> "R_RISCV_BRANCH";
+            case R_RISCV_JAL -> "R_RISCV_JAL";
+            case R_RISCV_CALL -> "R_RISCV_CALL";
+            case R_RISCV_CALL_PLT -> "R_RISCV_CALL_PLT";
+            case R_RISCV_PCREL_HI20 -> "R_RISCV_PCREL_HI20";
+            case R_RISCV_PCREL_LO12_I -> "R_RISCV_PCREL_LO12_I";
+            case R_RISCV_PCREL_LO12_S -> "R_RISCV_PCREL_LO12_S";
+            case R_RISCV_RVC_BRANCH -> "R_RISCV_RVC_BRANCH";
+            case R_RISCV_RVC_JUMP -> "R_RISCV_RVC_JUMP";
+            default -> null;
+        };
+    }
+
+    // The first known relocation of an address wins, R_RISCV_RELAX and friends at the same one are skipped
+    public void add(int address, int type, String symbol, long addend) {
+        if (!isKnown(type) || byAddress.containsKey(address)) {
+            return;
+        }
+        if (size == types.length) {
+            types = Arrays.copyOf(types, size * 2);
+            symbols = Arrays.copyOf(symbols, size * 2);
+            addends = Arrays.copyOf(addends, size * 2);
+        }
+        types[size] = type;
+        symbols[size] = symbol;
+        addends[size] = addend;
+        byAddress.put(address, size++);
+    }
+
+    // Relocation of the instruction at address, or IntIntMap.NO_VALUE
+    public int find(int address) {
+        return byAddress.get(address);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getType(int relocation) {
+        return types[relocation];
+    }
+
+    // Branches and jumps whose target is the relocation's symbol rather than the zero offset encoded
+    public boolean isTarget(int relocation) {
+        int type = types[relocation];
+        return type == R_RISCV_BRANCH || type == R_RISCV_JAL
+                || type == R_RISCV_RVC_BRANCH || type == R_RISCV_RVC_JUMP;
+    }
+
+    public boolean isTargetAt(int address) {
+        int relocation = byAddress.get(address);
+        return relocation != IntIntMap.NO_VALUE && isTarget(relocation);
+    }
+
+    // Symbol with the addend, like foo+0x10
+    public String getTarget(int relocation) {
+        long addend = addends[relocation];
+        if (addend == 0) {
+            return symbols[relocation];
+        }
+        return symbols[relocation] + (addend < 0 ? "-0x" + Long.toHexString(-addend) : "+0x" + Long.toHexString(addend));
+    }
+}
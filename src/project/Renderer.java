@@ -0,0 +1,123 @@
+package project;
+
+// Appends disassembly lines in exactly the form AsmCommand.toString produces, without String.format
+public final class Renderer {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final String[] ABI_NAMES = new String[32];
+    private static final String[] CSR_NAMES = new String[1 << 12];
+
+    // Same names as AsmCommand, looked up instead of built per instruction
+    static {
+        for (int x = 0; x < ABI_NAMES.length; x++) {
+            ABI_NAMES[x] = AsmCommand.xRegToAbi(x);
+        }
+        for (int imm = 0; imm < CSR_NAMES.length; imm++) {
+            CSR_NAMES[imm] = AsmCommand.toCsrRegister(imm);
+        }
+    }
+
+    private Renderer() {
+    }
+
+    public static String getAbiName(int x) {
+        return ABI_NAMES[x];
+    }
+
+    // The CSR number is the sign-extended I-immediate, so 0x800 and above have no name, as in AsmCommand
+    public static String getCsrName(int imm) {
+        return imm >= 0 && imm < CSR_NAMES.length ? CSR_NAMES[imm] : null;
+    }
+
+    public static void appendHex(StringBuilder out, int value) {
+        for (int shift = 28; shift >= 0; shift -= 4) {
+            out.append(HEX[(value >>> shift) & 0xf]);
+        }
+    }
+
+    public static void appendHex(StringBuilder out, long value) {
+        appendHex(out, (int) (value >>> 32));
+        appendHex(out, (int) value);
+    }
+
+    public static void appendPadded(StringBuilder out, String value, int width) {
+        for (int i = value.length(); i < width; i++) {
+            out.append(' ');
+        }
+        out.append(value);
+    }
+
+    private static StringBuilder reg(StringBuilder out, int x) {
+        return out.append(ABI_NAMES[x]);
+    }
+
+    private static StringBuilder memory(StringBuilder out, int imm, int base) {
+        return out.append(imm).append('(').append(ABI_NAMES[base]).append(')');
+    }
+
+    public static void appendInstruction(StringBuilder out, DecodedInstruction cmd, String tag, LabelTable labels) {
+        appendHex(out, cmd.address);
+        appendBody(out, cmd, tag, null, labels);
+        out.append('\n');
+    }
+
+    // ELF64 lines start with all 16 digits of the address, cmd.address only has the low half
+    public static void appendInstruction(StringBuilder out, DecodedInstruction cmd, long address, String tag,
+                                         LabelTable labels) {
+        appendHex(out, address);
+        appendBody(out, cmd, tag, null, labels);
+        out.append('\n');
+    }
+
+    // Instruction patched by a relocation: branches and jumps show its symbol as their target and
+    // every line ends with the relocation, like "  # R_RISCV_CALL puts"
+    public static void appendRelocated(StringBuilder out, DecodedInstruction cmd, long address, boolean wide,
+                                       String tag, RelocationIndex relocations, int relocation,
+                                       LabelTable labels) {
+        if (wide) {
+            appendHex(out, address);
+        } else {
+            appendHex(out, (int) address);
+        }
+        String symbol = relocations.getTarget(relocation);
+        appendBody(out, cmd, tag, relocations.isTarget(relocation) ? symbol : null, labels);
+        out.append("  # ").append(RelocationIndex.getTypeName(relocations.getType(relocation)))
+                .append(' ').append(symbol).append('\n');
+    }
+
+    private static String target(DecodedInstruction cmd, String target, LabelTable labels) {
+        return target != null ? target : labels.getNameAt(cmd.getTarget());
+    }
+
+    // target replaces the label at cmd.getTarget() when it isn't null
+    private static void appendBody(StringBuilder out, DecodedInstruction cmd, String tag, String target,
+                                   LabelTable labels) {
+        out.append(' ');
+        appendPadded(out, tag, 10);
+        out.append(": ").append(cmd.mnemonic.getText());
+        switch (cmd.format) {
+            case NONE -> {
+            }
+            case REG_REG_REG -> reg(reg(reg(out.append(", "), cmd.rd).append(", "), cmd.rs1).append(", "), cmd.rs2);
+            case REG_REG_IMM -> reg(reg(out.append(", "), cmd.rd).append(", "), cmd.rs1).append(", ").append(cmd.imm);
+            case LOAD -> memory(reg(out.append(' '), cmd.rd).append(", "), cmd.imm, cmd.rs1);
+            case STORE -> memory(reg(out.append(", "), cmd.rs2).append(", "), cmd.imm, cmd.rs1);
+            case STORE_C -> memory(reg(out.append(' '), cmd.rs2).append(", "), cmd.imm, cmd.rs1);
+            case CSR -> reg(reg(out.append(", "), cmd.rd).append(", ").append(getCsrName(cmd.imm)).append(", "),
+                    cmd.rs1);
+            case CSR_IMM -> reg(out.append(", "), cmd.rd).append(", ").append(getCsrName(cmd.imm)).append(", ")
+                    .append(cmd.rs1);
+            case BRANCH -> reg(reg(out.append(", "), cmd.rs1).append(", "), cmd.rs2).append(", ")
+                    .append(target(cmd, target, labels));
+            case UPPER -> reg(out.append(", "), cmd.rd).append(", ").append(cmd.imm);
+            case JUMP_LINK -> reg(out.append(", "), cmd.rd).append(", ").append(target(cmd, target, labels));
+            case C_TARGET -> out.append(' ').append(target(cmd, target, labels));
+            case C_BRANCH -> reg(out.append(' '), cmd.rs1).append(", ").append(target(cmd, target, labels));
+            case C_REG_IMM -> reg(out.append(' '), cmd.rd).append(", ")
+                    .append(cmd.mnemonic == Mnemonic.C_LUI ? cmd.imm >> 12 : cmd.imm);
+            case C_REG_REG_IMM -> reg(reg(out.append(' '), cmd.rd).append(", "), cmd.rs1).append(", ").append(cmd.imm);
+            case C_REG_REG -> reg(reg(out.append(' '), cmd.rd).append(", "), cmd.rs2);
+            case C_REG_REG_OP -> reg(reg(out.append(", "), cmd.rd).append(", "), cmd.rs2);
+            case C_REG -> reg(out.append(' '), cmd.rs1);
+        }
+    }
+}
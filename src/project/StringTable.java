@@ -0,0 +1,77 @@
+package project;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// String table section read on demand. Every offset is decoded at most once, comparisons
+// by name work on the raw bytes and don't decode anything.
+public final class StringTable {
+    private final ElfData file;
+    private final SectionHeader section;
+    private final IntIntMap slots = new IntIntMap();
+    private String[] cache = new String[16];
+    private int cached;
+
+    public StringTable(ElfData file, SectionHeader section) {
+        this.file = file;
+        this.section = section;
+        file.ensureRange(section.getSh_offset(), section.getSh_size(), "string table");
+    }
+
+    public SectionHeader getSection() {
+        return section;
+    }
+
+    private int start(int index) {
+        Assert.ensure(index >= 0 && index < section.getSh_size(), "Bad index: %s, but stringTable size is %s",
+                index, section.getSh_size());
+        return section.getSh_offset() + index;
+    }
+
+    private int end(int pos) {
+        int limit = section.getSh_offset() + section.getSh_size();
+        while (pos < limit && file.getByte(pos) != 0) {
+            pos++;
+        }
+        Assert.ensure(pos < limit, "String at %s is not terminated", pos);
+        return pos;
+    }
+
+    public synchronized String get(int index) {
+        int slot = slots.get(index);
+        if (slot != IntIntMap.NO_VALUE) {
+            return cache[slot];
+        }
+        int from = start(index);
+        int to = end(from);
+        char[] val = new char[to - from];
+        for (int i = 0; i < val.length; i++) {
+            val[i] = (char) (file.getByte(from + i) & 0xff); // ISO-8859-1 like encode, so names round-trip
+        }
+        String name = new String(val);
+        if (cached == cache.length) {
+            cache = Arrays.copyOf(cache, cached * 2);
+        }
+        cache[cached] = name;
+        slots.put(index, cached++);
+        return name;
+    }
+
+    public boolean matches(int index, byte[] name) {
+        int pos = start(index);
+        int limit = section.getSh_offset() + section.getSh_size();
+        if (name.length >= limit - pos) {
+            return false; // No room for the name and its terminator
+        }
+        for (int i = 0; i < name.length; i++) {
+            if (file.getByte(pos + i) != name[i]) {
+                return false;
+            }
+        }
+        return file.getByte(pos + name.length) == 0;
+    }
+
+    public static byte[] encode(String name) {
+        return name.getBytes(StandardCharsets.ISO_8859_1);
+    }
+}
@@ -1,26 +1,38 @@
 package project;
 
-import static project.ElfParser.getStringFromStringTable;
+public final class Symbol {
+    private final int symbolIndex;
+    private final int name;
+    private final long value; // Unsigned, ELF32 values are zero-extended
+    private final long size;
+    private final int info;
+    private final int other;
+    private final int shndx;
 
-public class Symbol {
-    private int symbolIndex;
-    private int name;
-    private int value;
-    private int size;
-    private int info;
-    private int other;
-    private int shndx;
+    public Symbol(int symbolIndex, int name, int value, int size, int info, int other, int shndx) {
+        this(symbolIndex, name, Integer.toUnsignedLong(value), Integer.toUnsignedLong(size), info, other, shndx);
+    }
+
+    public Symbol(int symbolIndex, int name, long value, long size, int info, int other, int shndx) {
+        this.symbolIndex = symbolIndex;
+        this.name = name;
+        this.value = value;
+        this.size = size;
+        this.info = info;
+        this.other = other;
+        this.shndx = shndx;
+    }
 
-    public String getStringRepresentation(SectionHeader strTable, byte[] file) {
+    public String getStringRepresentation(StringTable strTable) {
 
         String type = getTypeString();
         String bind = getBindString();
-        String name = getStringFromStringTable(getName(), strTable, file);
+        String name = strTable.get(getName());
         String vis = getVisString();
         String index = getIndexString();
 
         String ans = String.format("[%4d] 0x%-15X %5d %-8s %-8s %-8s %6s %s\n",
-                symbolIndex, getValue(), getSize(), type, bind, vis, index, name);
+                symbolIndex, value, size, type, bind, vis, index, name);
 
         return ans;
     }
@@ -91,43 +103,32 @@ public class Symbol {
         return other & 0x3;
     }
 
-    public void setOther(int other) {
-        this.other = other;
+    public int getSymbolIndex() {
+        return symbolIndex;
     }
 
-    public void setSymbolIndex(int symbolIndex) {
-        this.symbolIndex = symbolIndex;
+    public int getShndx() {
+        return shndx;
     }
 
     public int getName() {
         return name;
     }
 
-    public void setName(int name) {
-        this.name = name;
-    }
-
+    // Low 32 bits, like SectionHeader.getAddress
     public int getValue() {
-        return value;
-    }
-
-    public void setValue(int value) {
-        this.value = value;
+        return (int) value;
     }
 
     public int getSize() {
-        return size;
+        return (int) size;
     }
 
-    public void setSize(int size) {
-        this.size = size;
-    }
-
-    public void setInfo(int info) {
-        this.info = info;
+    public long getFullValue() {
+        return value;
     }
 
-    public void setShndx(int shndx) {
-        this.shndx = shndx;
+    public long getFullSize() {
+        return size;
     }
 }
\ No newline at end of file
@@ -0,0 +1,157 @@
+package project;
+
+import java.util.Arrays;
+import java.util.List;
+
+// Symbols sorted by address for "which symbol covers this PC" queries. Addresses are unsigned,
+// every array is primitive and lookups are binary searches. Only symbols in one 4 GB window are
+// kept, the int addresses are the low 32 bits within it.
+public final class SymbolIndex {
+    public static final int NONE = -1;
+
+    private final int[] starts; // value ^ Integer.MIN_VALUE, so signed order is unsigned address order
+    private final long[] ends; // unsigned end address, exclusive
+    private final int[] parents; // Closest earlier position with a greater end, or -1
+    private final int[] symbols;
+    private final long window;
+
+    public SymbolIndex(List<Symbol> symbolList) {
+        this(symbolList, 0);
+    }
+
+    // window is the upper 32 bits of the addresses to look up, see ElfModel.getCodeWindow
+    public SymbolIndex(List<Symbol> symbolList, long window) {
+        this.window = window;
+        long[] keys = new long[symbolList.size()];
+        int n = 0;
+        for (int i = 0; i < symbolList.size(); i++) {
+            Symbol symbol = symbolList.get(i);
+            int shndx = symbol.getShndx();
+            if (shndx == 0 || shndx == 0xfff1 || symbol.getType() == 3 || symbol.getType() == 4) {
+                continue; // UNDEF, ABS, SECTION and FILE symbols don't cover code or data
+            }
+            if (symbol.getFullValue() >>> 32 != window) {
+                continue;
+            }
+            keys[n++] = (long) (symbol.getValue() ^ Integer.MIN_VALUE) << 32 | i;
+        }
+        Arrays.sort(keys, 0, n);
+
+        starts = new int[n];
+        ends = new long[n];
+        parents = new int[n];
+        symbols = new int[n];
+        for (int i = 0; i < n; i++) {
+            Symbol symbol = symbolList.get((int) keys[i]);
+            starts[i] = (int) (keys[i] >> 32);
+            symbols[i] = symbol.getSymbolIndex();
+            ends[i] = Integer.toUnsignedLong(symbol.getValue()) + Integer.toUnsignedLong(symbol.getSize());
+            // Symbols with the same start go outermost first, so the last one covering an address is innermost
+            for (int j = i; j > 0 && starts[j - 1] == starts[j] && ends[j - 1] < ends[j]; j--) {
+                swap(j - 1, j);
+            }
+        }
+        // Monotonic stack of positions with decreasing ends
+        int[] stack = new int[n];
+        int top = 0;
+        for (int i = 0; i < n; i++) {
+            while (top > 0 && ends[stack[top - 1]] <= ends[i]) {
+                top--;
+            }
+            parents[i] = top > 0 ? stack[top - 1] : -1;
+            stack[top++] = i;
+        }
+    }
+
+    private void swap(int i, int j) {
+        long end = ends[i];
+        ends[i] = ends[j];
+        ends[j] = end;
+        int symbol = symbols[i];
+        symbols[i] = symbols[j];
+        symbols[j] = symbol;
+    }
+
+    public int size() {
+        return starts.length;
+    }
+
+    // Last position with start <= pc, or -1
+    private int floor(int pc) {
+        int key = pc ^ Integer.MIN_VALUE;
+        int l = 0;
+        int r = starts.length;
+        while (l < r) {
+            int m = (l + r) >>> 1;
+            if (starts[m] <= key) {
+                l = m + 1;
+            } else {
+                r = m;
+            }
+        }
+        return l - 1;
+    }
+
+    // Positions skipped on the way to a parent end no later than the one left, so they can't cover pc
+    // either. The walk follows ever later ends, that is the nesting depth for nested symbols
+    private int containingFrom(int i, int pc) {
+        long address = Integer.toUnsignedLong(pc);
+        while (i >= 0) {
+            if (ends[i] > address) {
+                return symbols[i];
+            }
+            i = parents[i];
+        }
+        return NONE;
+    }
+
+    // Innermost sized symbol with value <= pc < value + size
+    public int containing(int pc) {
+        return containingFrom(floor(pc), pc);
+    }
+
+    // Closest symbol at or below pc, sized or not
+    public int nearest(int pc) {
+        int i = floor(pc);
+        return i < 0 ? NONE : symbols[i];
+    }
+
+    public void containing(int[] pcs, int[] out) {
+        Assert.ensure(out.length >= pcs.length, "Output has %s slots for %s addresses", out.length, pcs.length);
+        int i = -1;
+        int previous = 0;
+        for (int k = 0; k < pcs.length; k++) {
+            int pc = pcs[k];
+            // Sorted traces move forward a little at a time, stepping is cheaper than searching
+            if (i >= 0 && Integer.compareUnsigned(pc, previous) >= 0) {
+                int key = pc ^ Integer.MIN_VALUE;
+                int steps = 0;
+                while (i + 1 < starts.length && starts[i + 1] <= key && steps < 8) {
+                    i++;
+                    steps++;
+                }
+                if (i + 1 < starts.length && starts[i + 1] <= key) {
+                    i = floor(pc);
+                }
+            } else {
+                i = floor(pc);
+            }
+            previous = pc;
+            out[k] = containingFrom(i, pc);
+        }
+    }
+
+    public void containing(long[] pcs, int[] out) {
+        Assert.ensure(out.length >= pcs.length, "Output has %s slots for %s addresses", out.length, pcs.length);
+        for (int k = 0; k < pcs.length; k++) {
+            out[k] = pcs[k] >>> 32 == window ? containing((int) pcs[k]) : NONE;
+        }
+    }
+
+    public void nearest(int[] pcs, int[] out) {
+        Assert.ensure(out.length >= pcs.length, "Output has %s slots for %s addresses", out.length, pcs.length);
+        for (int k = 0; k < pcs.length; k++) {
+            out[k] = nearest(pcs[k]);
+        }
+    }
+}
@@ -0,0 +1,337 @@
+package project;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+public class TextDecoder {
+    private static final int MIN_CHUNK_SIZE = 1 << 16;
+
+    static final class Chunk {
+        final int from;
+        final int to;
+        int end;
+        InstructionStore store;
+        IntList targets;
+
+        Chunk(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+    }
+
+    private final ElfData file;
+    private final int offset;
+    private final int size;
+    private final int address;
+    private final InstructionSet isa;
+    private RelocationIndex relocations;
+
+    public TextDecoder(ElfData file, SectionHeader textHeader) {
+        this(file, textHeader, Decoder.XLEN32);
+    }
+
+    public TextDecoder(ElfData file, SectionHeader textHeader, InstructionSet isa) {
+        this(file, textHeader.getSh_offset(), textHeader.getSh_size(), textHeader.getAddress(), isa, ".text");
+    }
+
+    // Code outside of any section, such as a segment of a file without section headers
+    TextDecoder(ElfData file, int offset, int size, int address, InstructionSet isa, String what) {
+        this.file = file;
+        this.isa = isa;
+        this.offset = offset;
+        this.size = size;
+        this.address = address;
+        file.ensureRange(offset, size, what);
+    }
+
+    // Jumps and branches with a relocation don't get labels, their encoded target is meaningless
+    public void setRelocations(RelocationIndex relocations) {
+        this.relocations = relocations;
+    }
+
+    private boolean isLabeled(int address) {
+        return relocations == null || !relocations.isTargetAt(address);
+    }
+
+    Chunk decode(int from, int to) {
+        Chunk chunk = new Chunk(from, to);
+        decode(chunk);
+        return chunk;
+    }
+
+    // Decodes instructions starting in [from, to), the last one may end after to
+    private void decode(Chunk chunk) {
+        chunk.store = new InstructionStore((chunk.to - chunk.from) / 3);
+        chunk.targets = new IntList();
+        DecodedInstruction cmd = new DecodedInstruction();
+        int pos = chunk.from;
+        int address = this.address + (chunk.from - offset);
+        while (pos < chunk.to) {
+            int inst = file.getInstruction(pos);
+            isa.decode(inst, address, cmd);
+            chunk.store.add(inst, address, cmd.length);
+            if (cmd.hasTarget && isLabeled(address)) {
+                chunk.targets.add(cmd.getTarget());
+            }
+            pos += cmd.length;
+            address += cmd.length;
+        }
+        chunk.end = pos;
+    }
+
+    // The whole section, targets are left in the chunk for the caller to turn into labels
+    Chunk decodeSection() {
+        Chunk chunk = decode(offset, offset + size);
+        chunk.store.trim();
+        return chunk;
+    }
+
+    // Like decodeSection, but the sweep restarts at sync, an address known to start an instruction
+    // such as the entry point. An instruction before it that would run over it is left out
+    Chunk decodeSection(int sync) {
+        int relative = sync - address;
+        if (relative <= 0 || relative >= size || (relative & 1) != 0) {
+            return decodeSection();
+        }
+        Chunk head = decode(offset, offset + relative);
+        Chunk tail = decode(offset + relative, offset + size);
+        int keep = head.store.size();
+        if (head.end > offset + relative) {
+            keep--;
+            if (isa.hasTarget(head.store.getRaw(keep)) && isLabeled(head.store.getAddress(keep))) {
+                head.targets.removeLast();
+            }
+        }
+        Chunk chunk = new Chunk(offset, offset + size);
+        chunk.store = new InstructionStore(keep + tail.store.size());
+        chunk.store.addShifted(head.store, 0, keep, 0);
+        chunk.store.addAll(tail.store);
+        chunk.targets = head.targets;
+        for (int i = 0; i < tail.targets.size(); i++) {
+            chunk.targets.add(tail.targets.get(i));
+        }
+        chunk.end = tail.end;
+        return chunk;
+    }
+
+    public InstructionStore decode(LabelTable labels) {
+        Chunk chunk = decodeSection();
+        for (int i = 0; i < chunk.targets.size(); i++) {
+            labels.putGenerated(chunk.targets.get(i));
+        }
+        return chunk.store;
+    }
+
+    // Function starts are places where the sequential sweep is expected to be in sync,
+    // so .text is cut there and the pieces are decoded independently
+    public InstructionStore decodeParallel(int[] functionStarts, ForkJoinPool pool, LabelTable labels) {
+        Chunk[] chunks = split(functionStarts, pool.getParallelism());
+        pool.invoke(new DecodeTask(chunks, 0, chunks.length));
+
+        int total = 0;
+        for (Chunk chunk : chunks) {
+            total += chunk.store.size();
+        }
+        InstructionStore res = new InstructionStore(total);
+        int expected = offset;
+        for (Chunk chunk : chunks) {
+            if (expected >= chunk.to) {
+                continue; // Previous chunk ran over this one entirely
+            }
+            if (chunk.from != expected) {
+                // The sweep went through the split point in the middle of an instruction
+                chunk = decode(expected, chunk.to);
+            }
+            res.addAll(chunk.store);
+            for (int i = 0; i < chunk.targets.size(); i++) {
+                labels.putGenerated(chunk.targets.get(i));
+            }
+            expected = chunk.end;
+        }
+        res.trim();
+        return res;
+    }
+
+    private static void set(long[] bits, int i) {
+        bits[i >>> 6] |= 1L << i;
+    }
+
+    private static boolean get(long[] bits, int i) {
+        return (bits[i >>> 6] & (1L << i)) != 0;
+    }
+
+    // Follows control flow from roots instead of sweeping, so data inside .text is never decoded.
+    // A path stops at an unconditional jump, a return, an unknown encoding or a halfword some
+    // earlier path already decoded. Labels are generated in address order, like in decode()
+    public InstructionStore decodeRecursive(int[] roots, LabelTable labels) {
+        long[] covered = new long[(size >>> 7) + 1]; // Bit per halfword
+        long[] starts = new long[covered.length];
+        IntList work = new IntList();
+        for (int root : roots) {
+            work.add(root - address);
+        }
+        DecodedInstruction cmd = new DecodedInstruction();
+        int count = 0;
+        while (work.size() > 0) {
+            int relative = work.removeLast();
+            while (relative >= 0 && relative < size && (relative & 1) == 0 && !get(covered, relative >>> 1)) {
+                if (relative > size - Decoder.getLength(file.getHalf(offset + relative))) {
+                    break;
+                }
+                int inst = file.getInstruction(offset + relative);
+                isa.decode(inst, address + relative, cmd);
+                if (cmd.mnemonic.isUnknown()) {
+                    break;
+                }
+                set(starts, relative >>> 1);
+                set(covered, relative >>> 1);
+                if (cmd.length == 4) {
+                    set(covered, (relative >>> 1) + 1);
+                }
+                count++;
+                if (cmd.hasTarget) {
+                    work.add(cmd.getTarget() - address);
+                }
+                Mnemonic mnemonic = cmd.mnemonic;
+                if (mnemonic == Mnemonic.C_J || mnemonic == Mnemonic.C_JR
+                        || (mnemonic == Mnemonic.JAL || mnemonic == Mnemonic.JALR) && cmd.rd == 0) {
+                    break;
+                }
+                relative += cmd.length;
+            }
+        }
+
+        InstructionStore store = new InstructionStore(count);
+        for (int w = 0; w < starts.length; w++) {
+            for (long bits = starts[w]; bits != 0; bits &= bits - 1) {
+                int relative = (w << 7) + (Long.numberOfTrailingZeros(bits) << 1);
+                int inst = file.getInstruction(offset + relative);
+                store.add(inst, address + relative, Decoder.getLength(inst));
+                if (isa.hasTarget(inst) && isLabeled(address + relative)) {
+                    isa.decode(inst, address + relative, cmd);
+                    labels.putGenerated(cmd.getTarget());
+                }
+            }
+        }
+        return store;
+    }
+
+    // Offsets from the start of .text, sorted, without the ones a sweep can never reach
+    private int[] relativeStarts(int[] functionStarts) {
+        return Arrays.stream(functionStarts)
+                .filter(address -> (address & 1) == 0)
+                .map(address -> address - this.address)
+                .filter(relative -> relative > 0 && relative < size)
+                .sorted()
+                .distinct()
+                .toArray();
+    }
+
+    // Functions whose bytes are the same as in a previous build are copied from its store instead of decoded.
+    // previousIndex maps a function start in this build to the index of the same function's first
+    // instruction in previous. Everything else is decoded as usual, so the result is the same as decode()
+    public InstructionStore decodeIncremental(int[] functionStarts, IntIntMap previousIndex,
+                                              TextDecoder previousText, InstructionStore previous,
+                                              LabelTable labels) {
+        int[] starts = relativeStarts(functionStarts);
+        InstructionStore res = new InstructionStore(previous.size() + Math.max(0, size - previousText.size) / 2);
+        IntList targets = new IntList();
+        DecodedInstruction cmd = new DecodedInstruction();
+        int expected = offset;
+        for (int i = 0; i <= starts.length; i++) {
+            int from = i == 0 ? offset : offset + starts[i - 1];
+            int to = i < starts.length ? offset + starts[i] : offset + size;
+            if (expected >= to) {
+                continue; // Previous function ran over this one entirely
+            }
+            int index = expected == from ? previousIndex.get(address + (from - offset)) : IntIntMap.NO_VALUE;
+            if (index != IntIntMap.NO_VALUE && copy(previousText, previous, index, from, to, res, targets, cmd)) {
+                expected = to;
+                continue;
+            }
+            Chunk chunk = decode(expected, to);
+            res.addAll(chunk.store);
+            for (int j = 0; j < chunk.targets.size(); j++) {
+                targets.add(chunk.targets.get(j));
+            }
+            expected = chunk.end;
+        }
+        res.trim();
+        for (int i = 0; i < targets.size(); i++) {
+            labels.putGenerated(targets.get(i));
+        }
+        return res;
+    }
+
+    // Copies instructions of [from, to) from previous, starting at index, if the bytes they were decoded
+    // from are the same and the previous sweep ended exactly at the end of the range.
+    // Only jumps and branches are decoded, for their moved targets
+    private boolean copy(TextDecoder previousText, InstructionStore previous, int index, int from, int to,
+                         InstructionStore res, IntList targets, DecodedInstruction cmd) {
+        int length = to - from;
+        int previousAddress = previous.getAddress(index);
+        int previousFrom = previousText.offset + (previousAddress - previousText.address);
+        int previousEnd = previousText.offset + previousText.size;
+        if (previousFrom > previousEnd - length) {
+            return false;
+        }
+        int end = previousFrom + length == previousEnd ? previous.size() : previous.indexOf(previousAddress + length);
+        if (end < 0 || file.slice(from, length, ".text").mismatch(
+                previousText.file.slice(previousFrom, length, "previous .text")) != -1) {
+            return false;
+        }
+        int first = res.size();
+        res.addShifted(previous, index, end - index, this.address + (from - offset) - previousAddress);
+        for (int j = first; j < res.size(); j++) {
+            int inst = res.getRaw(j);
+            if (isa.hasTarget(inst)) {
+                isa.decode(inst, res.getAddress(j), cmd);
+                targets.add(cmd.getTarget());
+            }
+        }
+        return true;
+    }
+
+    private Chunk[] split(int[] functionStarts, int parallelism) {
+        int minSize = Math.max(MIN_CHUNK_SIZE, size / (parallelism * 4));
+        int[] starts = relativeStarts(functionStarts);
+
+        IntList points = new IntList();
+        points.add(offset);
+        for (int relative : starts) {
+            if (offset + relative - points.get(points.size() - 1) >= minSize) {
+                points.add(offset + relative);
+            }
+        }
+        Chunk[] chunks = new Chunk[points.size()];
+        for (int i = 0; i < chunks.length; i++) {
+            int to = i + 1 < chunks.length ? points.get(i + 1) : offset + size;
+            chunks[i] = new Chunk(points.get(i), to);
+        }
+        return chunks;
+    }
+
+    @SuppressWarnings("serial") // Fork/join tasks are never serialized
+    private class DecodeTask extends RecursiveAction {
+        private final Chunk[] chunks;
+        private final int l;
+        private final int r;
+
+        DecodeTask(Chunk[] chunks, int l, int r) {
+            this.chunks = chunks;
+            this.l = l;
+            this.r = r;
+        }
+
+        @Override
+        protected void compute() {
+            if (r - l == 1) {
+                decode(chunks[l]);
+                return;
+            }
+            int m = (l + r) >>> 1;
+            invokeAll(new DecodeTask(chunks, l, m), new DecodeTask(chunks, m, r));
+        }
+    }
+}
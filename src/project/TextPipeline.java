@@ -0,0 +1,131 @@
+package project;
+
+import java.io.PrintWriter;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Streams .text to the output without keeping it decoded in memory:
+// 1. one sequential sweep finds branch targets and instruction-aligned chunk starts,
+// 2. chunks are decoded and rendered on a pool with the finished label table,
+// 3. rendered chunks are written in order, at most depth of them are in flight.
+public class TextPipeline {
+    private static final int CHUNK_SIZE = 1 << 16;
+
+    private final ElfData file;
+    private final int offset;
+    private final int size;
+    private final int address;
+    private final long fullAddress;
+    private final InstructionSet isa;
+    private final LabelTable labels;
+    private final int threads;
+    private final int depth;
+    private Metrics metrics;
+
+    public TextPipeline(ElfData file, SectionHeader textHeader, LabelTable labels, int threads, int depth) {
+        this(file, textHeader, Decoder.XLEN32, labels, threads, depth);
+    }
+
+    public TextPipeline(ElfData file, SectionHeader textHeader, InstructionSet isa, LabelTable labels,
+                        int threads, int depth) {
+        Assert.ensure(threads > 0 && depth > 0, "Bad pipeline shape: %s threads, depth %s", threads, depth);
+        this.file = file;
+        this.offset = textHeader.getSh_offset();
+        this.size = textHeader.getSh_size();
+        this.address = textHeader.getAddress();
+        this.fullAddress = textHeader.getFullAddress();
+        this.isa = isa;
+        this.labels = labels;
+        this.threads = threads;
+        this.depth = depth;
+        file.ensureRange(offset, size, ".text");
+    }
+
+    // Scanning counts as decoding, the chunks as rendering
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    private IntList scan() {
+        IntList chunkStarts = new IntList();
+        DecodedInstruction cmd = new DecodedInstruction();
+        int pos = offset;
+        int nextChunk = offset;
+        while (pos < offset + size) {
+            if (pos >= nextChunk) {
+                chunkStarts.add(pos);
+                nextChunk = pos + CHUNK_SIZE;
+            }
+            isa.decode(file.getInstruction(pos), address + (pos - offset), cmd);
+            if (cmd.hasTarget) {
+                labels.putGenerated(cmd.getTarget());
+            }
+            pos += cmd.length;
+        }
+        return chunkStarts;
+    }
+
+    private String render(int from, int to) {
+        StringBuilder lines = new StringBuilder((to - from) * 12);
+        DecodedInstruction cmd = new DecodedInstruction();
+        Metrics.Tally tally = metrics == null ? null : metrics.newTally();
+        int pos = from;
+        while (pos < to) {
+            int address = this.address + (pos - offset);
+            int inst = file.getInstruction(pos);
+            isa.decode(inst, address, cmd);
+            if (tally != null) {
+                tally.count(inst, cmd.mnemonic);
+            }
+            int label = labels.get(address);
+            String tag = label == LabelTable.NO_LABEL ? "" : labels.getName(label);
+            if (isa.getXlen() == 32) {
+                Renderer.appendInstruction(lines, cmd, tag, labels);
+            } else {
+                Renderer.appendInstruction(lines, cmd, fullAddress + (pos - offset), tag, labels);
+            }
+            pos += cmd.length;
+        }
+        if (tally != null) {
+            tally.flush();
+        }
+        return lines.toString();
+    }
+
+    public void run(PrintWriter out) {
+        long start = System.nanoTime();
+        IntList chunkStarts = scan();
+        labels.resolveNames(); // Chunks are rendered concurrently, they only read labels
+        long scanned = System.nanoTime();
+        if (metrics != null) {
+            metrics.addStage(Metrics.Stage.DECODE, scanned - start);
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            ArrayDeque<Future<String>> inFlight = new ArrayDeque<>();
+            int next = 0;
+            while (next < chunkStarts.size() || !inFlight.isEmpty()) {
+                while (next < chunkStarts.size() && inFlight.size() < depth) {
+                    int from = chunkStarts.get(next);
+                    int to = next + 1 < chunkStarts.size() ? chunkStarts.get(next + 1) : offset + size;
+                    inFlight.add(pool.submit(() -> render(from, to)));
+                    next++;
+                }
+                out.append(inFlight.poll().get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AssertionError("Interrupted while rendering .text");
+        } catch (ExecutionException e) {
+            throw new AssertionError("Couldn't render .text: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            pool.shutdownNow();
+            if (metrics != null) {
+                metrics.addStage(Metrics.Stage.RENDER, System.nanoTime() - scanned);
+            }
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package project;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AddressFolderTest {
+    private static final int AUIPC_A0 = 0x00001517; //    auipc a0, 0x1
+    private static final int ADDI_A0 = 0x01050513; //     addi a0, a0, 16
+    private static final int LUI_A0 = 0x12345537; //      lui a0, 0x12345
+    private static final int ADDI_A0_LOW = 0x67850513; // addi a0, a0, 0x678
+    private static final int LW_A1 = 0x00452583; //       lw a1, 4(a0)
+    private static final int SW_A1 = 0x00b52623; //       sw a1, 12(a0)
+    private static final int SLLI_A0 = 0x00151513; //     slli a0, a0, 1
+    private static final int C_MV_A1 = 0x85aa; //         c.mv a1, a0
+    private static final int LW_A2 = 0x0085a603; //       lw a2, 8(a1)
+    private static final int BEQZ_A0 = 0x00050463; //     beq a0, zero, 8
+    private static final int JAL_RA = 0x010000ef; //      jal ra, 16
+    private static final int AUIPC_T0 = 0x00000297; //    auipc t0, 0
+    private static final int JALR_RA_T0 = 0x008280e7; //  jalr ra, 8(t0)
+    private static final int AUIPC_T1 = 0x00000317; //    auipc t1, 0
+    private static final int JR_T1 = 0x00430067; //       jalr zero, 4(t1)
+    private static final int ADDI_A1 = 0x00158593; //     addi a1, a1, 1
+
+    // One "<index> <address> <kind>" line per fold, instructions from 0x1000, labels at the given indexes
+    private static String fold(int[] labels, int... instructions) {
+        InstructionStore text = new InstructionStore();
+        int address = 0x1000;
+        for (int inst : instructions) {
+            int length = (inst & 0b11) == 0b11 ? 4 : 2;
+            text.add(inst, address, length);
+            address += length;
+        }
+        for (int index : labels) {
+            text.setLabel(index, 0);
+        }
+        AddressFolder folds = new AddressFolder(text, Decoder.XLEN32);
+        StringBuilder out = new StringBuilder();
+        for (int f = 0; f < folds.size(); f++) {
+            out.append(folds.getIndex(f)).append(" 0x").append(Integer.toHexString(folds.getAddress(f)))
+                    .append(' ').append(folds.getKind(f)).append('\n');
+        }
+        return out.toString();
+    }
+
+    private static String fold(int... instructions) {
+        return fold(new int[0], instructions);
+    }
+
+    @Test
+    void pcRelative() {
+        assertEquals("1 0x2010 0\n", fold(AUIPC_A0, ADDI_A0));
+        // The ADDI result is known too, the store uses it
+        assertEquals("1 0x2010 0\n2 0x201c 0\n", fold(AUIPC_A0, ADDI_A0, SW_A1));
+        // Unrelated instructions in between keep the value
+        assertEquals("2 0x2010 0\n", fold(AUIPC_A0, ADDI_A1, ADDI_A0));
+    }
+
+    @Test
+    void absolute() {
+        assertEquals("1 0x12345678 2\n2 0x1234567c 2\n", fold(LUI_A0, ADDI_A0_LOW, LW_A1));
+    }
+
+    @Test
+    void copiesAndOverwrites() {
+        assertEquals("2 0x2008 0\n", fold(AUIPC_A0, C_MV_A1, LW_A2));
+        assertEquals("", fold(AUIPC_A0, SLLI_A0, ADDI_A0));
+        // The load folds through a0 and overwrites a1 with something unknown
+        assertEquals("2 0x2004 0\n", fold(AUIPC_A0, C_MV_A1, LW_A1, LW_A2));
+    }
+
+    @Test
+    void jumps() {
+        // A call through a register folds, then drops everything
+        assertEquals("1 0x1008 1\n", fold(AUIPC_T0, JALR_RA_T0, ADDI_A0));
+        assertEquals("3 0x100c 1\n", fold(AUIPC_A0, AUIPC_T0, AUIPC_T1, JR_T1, ADDI_A0));
+        assertEquals("1 0x12345678 2\n2 0x12345680 3\n",
+                fold(LUI_A0, ADDI_A0_LOW, 0x00850067)); // jalr zero, 8(a0)
+    }
+
+    @Test
+    void blockStartsAndEnds() {
+        assertEquals("", fold(new int[]{1}, AUIPC_A0, ADDI_A0)); // Label on the ADDI
+        assertEquals("", fold(AUIPC_A0, BEQZ_A0, ADDI_A0)); // Branch
+        assertEquals("", fold(AUIPC_A0, JAL_RA, ADDI_A0)); // Direct call
+        assertEquals("", fold(AUIPC_A0, 0x0080006f, ADDI_A0)); // jal zero, 8
+        assertEquals("", fold(AUIPC_A0, 0x00000073, ADDI_A0)); // ecall
+        // A label on the AUIPC itself starts the block it belongs to
+        assertEquals("1 0x2010 0\n", fold(new int[]{0}, AUIPC_A0, ADDI_A0));
+    }
+
+    @Test
+    void sample() throws IOException {
+        String output = TestElf.disassemble(Files.readAllBytes(Paths.get("elfs", "sample.elf")),
+                parser -> parser.setFold(true));
+        assertEquals("""
+                0001007c           : ADDI, a0, a0, 894  # 0x0001037e <__libc_fini_array>
+                00010088           : ADDI, gp, gp, -964  # 0x00011cc0
+                0001008c           : ADDI, a0, gp, -972  # 0x000118f4 <completed.1>
+                00010090           : ADDI, a2, gp, -944  # 0x00011910
+                0001009e           : ADDI, a0, a0, 792  # 0x000103b2 <atexit>
+                000100a8           : ADDI, a0, a0, 730  # 0x0001037e <__libc_fini_array>
+                000100ce           : ADDI, a0, a0, 1104  # 0x00011450
+                000100f4           : ADDI, a0, a0, 1104  # 0x00011450
+                000101b8           : ADDI, a5, s0, 1204  # 0x000114b4
+                000101bc           : ADDI, s2, s2, 1204  # 0x000114b4
+                000101e6           : ADDI, a5, s0, 1204  # 0x000114b4
+                000101ea           : ADDI, s2, s2, 1212  # 0x000114bc
+                00010386           : ADDI, a5, a5, 1212  # 0x000114bc
+                0001038a           : ADDI, s0, s0, 1216  # 0x000114c0 <impure_data>
+                """, output.lines()
+                .filter(line -> line.contains("  # "))
+                .map(line -> line + "\n")
+                .collect(Collectors.joining()));
+        // Everything else is the plain listing
+        String plain = TestElf.disassemble(Files.readAllBytes(Paths.get("elfs", "sample.elf")));
+        assertEquals(plain, output.replaceAll("  # .*", ""));
+    }
+}
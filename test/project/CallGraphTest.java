@@ -0,0 +1,160 @@
+package project;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CallGraphTest {
+    private static final ForkJoinPool POOL = new ForkJoinPool(4);
+
+    @TempDir
+    Path directory;
+
+    private static String dot(CallGraph graph) {
+        StringWriter out = new StringWriter();
+        try (PrintWriter writer = new PrintWriter(out)) {
+            graph.writeDot(writer);
+        }
+        return out.toString();
+    }
+
+    private static CallGraph read(byte[] file) {
+        ElfParser parser = new ElfParser(file);
+        return parser.readCallGraph(parser.readModel(), POOL);
+    }
+
+    private static byte[] generate(boolean wide) {
+        ElfGenerator generator = new ElfGenerator();
+        generator.setTextSize(256 << 10);
+        generator.setSymbolCount(200);
+        generator.setBranchDensity(0.3);
+        generator.setWide(wide);
+        generator.setSeed(4);
+        if (wide) {
+            generator.setBaseAddress(0x500010000L);
+        }
+        return generator.generate();
+    }
+
+    @Test
+    void sampleDot() throws IOException {
+        CallGraph graph = read(Files.readAllBytes(Paths.get("elfs", "sample.elf")));
+        assertEquals("""
+                digraph calls {
+                    f0 [label="register_fini"];
+                    f1 [label="_start"];
+                    f4 [label="_Z8multiplyii"];
+                    f5 [label="main"];
+                    f6 [label="exit"];
+                    f7 [label="__libc_init_array"];
+                    f8 [label="memset"];
+                    f9 [label="__call_exitprocs"];
+                    f11 [label="atexit"];
+                    f12 [label="__register_exitproc"];
+                    f13 [label="_exit"];
+                    f14 [label="__errno"];
+                    f0 -> f11;
+                    f1 -> f5;
+                    f1 -> f6;
+                    f1 -> f7;
+                    f1 -> f8;
+                    f1 -> f11;
+                    f5 -> f4;
+                    f6 -> f9;
+                    f6 -> f13;
+                    f11 -> f12;
+                    f13 -> f14;
+                }
+                """, dot(graph));
+        assertEquals(15, graph.getFunctionCount());
+        assertEquals(11, graph.getEdgeCount());
+        assertEquals("main", graph.getFunctionName(5));
+        assertEquals(0x10104, graph.getFunctionAddress(4));
+    }
+
+    // The edges file holds the same pairs as the graph, in the same order, with addresses as wide as
+    // the file's
+    @Test
+    void edges() throws IOException {
+        List<byte[]> inputs = new ArrayList<>();
+        inputs.add(Files.readAllBytes(Paths.get("elfs", "sample.elf")));
+        inputs.add(Files.readAllBytes(Paths.get("elfs", "test2.elf")));
+        inputs.add(generate(false));
+        inputs.add(generate(true));
+        for (byte[] file : inputs) {
+            CallGraph graph = read(file);
+            boolean wide = file[4] == 2;
+            Path path = directory.resolve("edges");
+            graph.writeEdges(path);
+            ByteBuffer edges = ByteBuffer.wrap(Files.readAllBytes(path)).order(ByteOrder.LITTLE_ENDIAN);
+            assertTrue(graph.getEdgeCount() > 0);
+            assertEquals(graph.getEdgeCount(), edges.getInt());
+            StringBuilder dotEdges = new StringBuilder();
+            for (int f = 0; f < graph.getFunctionCount(); f++) {
+                for (int i = 0; i < graph.getCalleeCount(f); i++) {
+                    int callee = graph.getCallee(f, i);
+                    if (wide) {
+                        assertEquals(graph.getFullFunctionAddress(f), edges.getLong());
+                        assertEquals(graph.getFullFunctionAddress(callee), edges.getLong());
+                    } else {
+                        assertEquals(graph.getFunctionAddress(f), edges.getInt());
+                        assertEquals(graph.getFunctionAddress(callee), edges.getInt());
+                    }
+                    dotEdges.append("    f").append(f).append(" -> f").append(callee).append(";\n");
+                }
+            }
+            assertEquals(0, edges.remaining());
+            assertEquals(dotEdges.toString(), dot(graph).lines()
+                    .filter(line -> line.contains(" -> "))
+                    .map(line -> line + "\n")
+                    .collect(Collectors.joining()));
+        }
+        byte[] sample = Files.readAllBytes(Paths.get("elfs", "sample.elf"));
+        read(sample).writeEdges(directory.resolve("edges"));
+        ByteBuffer edges = ByteBuffer.wrap(Files.readAllBytes(directory.resolve("edges")))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(11, edges.getInt());
+        assertEquals(0x10074, edges.getInt()); // register_fini
+        assertEquals(0x103b2, edges.getInt()); // atexit
+    }
+
+    // The graph parse leaves behind is the one a separate sweep finds
+    @Test
+    void afterParse() throws IOException {
+        List<Consumer<ElfParser>> setups = List.of(
+                parser -> {
+                },
+                parser -> parser.setParallel(POOL),
+                parser -> parser.setPipeline(3),
+                parser -> parser.setRecursive(true),
+                parser -> parser.setAllSections(true),
+                parser -> parser.setSegments(true),
+                parser -> parser.setCache(new DisassemblyCache(directory, DisassemblyCache.DEFAULT_LIMIT)));
+        for (String name : new String[]{"sample.elf", "test2.elf"}) {
+            byte[] file = Files.readAllBytes(Paths.get("elfs", name));
+            String expected = dot(read(file));
+            for (Consumer<ElfParser> setup : setups) {
+                ElfParser parser = new ElfParser(file);
+                setup.accept(parser);
+                parser.parse(new PrintWriter(new StringWriter()));
+                assertEquals(expected, dot(parser.getCallGraph(POOL)), name);
+            }
+        }
+    }
+}
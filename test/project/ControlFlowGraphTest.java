@@ -0,0 +1,243 @@
+package project;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ControlFlowGraphTest {
+    private static final int ADDI = 0x00108093; // addi ra, ra, 1
+    private static final int RET = 0x00008067; // jalr zero, 0(ra)
+    private static final int JALR_T0 = 0x000280e7; // jalr ra, 0(t0)
+    private static final int C_NOP = 0x0001;
+
+    private static int jal(int rd, int offset) {
+        return (offset >>> 20 & 1) << 31 | (offset >>> 1 & 0x3ff) << 21 | (offset >>> 11 & 1) << 20
+                | (offset >>> 12 & 0xff) << 12 | rd << 7 | 0b1101111;
+    }
+
+    private static int beqz(int offset) {
+        return (offset >>> 12 & 1) << 31 | (offset >>> 5 & 0x3f) << 25 | (offset >>> 1 & 0xf) << 8
+                | (offset >>> 11 & 1) << 7 | 0b1100011;
+    }
+
+    private static void add(InstructionStore text, int inst) {
+        int address = text.size() == 0 ? 0x1000
+                : text.getAddress(text.size() - 1) + text.getLength(text.size() - 1);
+        text.add(inst, address, (inst & 0b11) == 0b11 ? 4 : 2);
+    }
+
+    private static int[] blockStarts(ControlFlowGraph graph) {
+        int[] starts = new int[graph.getBlockCount()];
+        for (int b = 0; b < starts.length; b++) {
+            starts[b] = graph.getBlockStart(b);
+        }
+        return starts;
+    }
+
+    private static int[] successors(ControlFlowGraph graph, int block) {
+        int[] successors = new int[graph.getSuccessorCount(block)];
+        for (int i = 0; i < successors.length; i++) {
+            successors[i] = graph.getSuccessor(block, i);
+        }
+        return successors;
+    }
+
+    private static int[] predecessors(ControlFlowGraph graph, int block) {
+        int[] predecessors = new int[graph.getPredecessorCount(block)];
+        for (int i = 0; i < predecessors.length; i++) {
+            predecessors[i] = graph.getPredecessor(block, i);
+        }
+        return predecessors;
+    }
+
+    @Test
+    void handWritten() {
+        InstructionStore text = new InstructionStore();
+        add(text, ADDI); //          0x1000  block 0, function 0x1000
+        add(text, beqz(14)); //      0x1004  to 0x1012
+        add(text, C_NOP); //         0x1008  block 1
+        add(text, jal(1, 0x16)); //  0x100a  call to 0x1020 stays in the block
+        add(text, jal(0, -14)); //   0x100e  to 0x1000
+        add(text, JALR_T0); //       0x1012  block 2, returns
+        add(text, beqz(2)); //       0x1016  block 3, into its own middle
+        add(text, RET); //           0x101a  block 4
+        add(text, C_NOP); //         0x101e  block 5
+        add(text, ADDI); //          0x1020  block 6, function 0x1020
+        add(text, RET); //           0x1024
+        // Duplicates, odd addresses, the middle of an instruction and addresses outside are ignored
+        ControlFlowGraph graph = new ControlFlowGraph(text,
+                new int[]{0x1020, 0x1000, 0x1021, 0x1000, 0x100c, 0x2000, 0xffc});
+
+        assertArrayEquals(new int[]{0, 2, 5, 6, 7, 8, 9}, blockStarts(graph));
+        assertEquals(text.size(), graph.getBlockEnd(6));
+        int[][] successors = {{2, 1}, {0}, {3}, {4}, {}, {6}, {}};
+        int[][] predecessors = {{1}, {0}, {0}, {2}, {3}, {}, {5}};
+        for (int b = 0; b < graph.getBlockCount(); b++) {
+            assertArrayEquals(successors[b], successors(graph, b), "Successors of " + b);
+            assertArrayEquals(predecessors[b], predecessors(graph, b), "Predecessors of " + b);
+        }
+        assertEquals(6, graph.getEdgeCount());
+
+        assertEquals(1, graph.getBlockAt(0x100a));
+        assertEquals(6, graph.getBlockAt(0x1024));
+        assertEquals(-1, graph.getBlockAt(0x100c));
+        assertEquals(-1, graph.getBlockAt(0x1028));
+
+        assertEquals(2, graph.getFunctionCount());
+        assertEquals(0x1000, graph.getFunctionAddress(0));
+        assertEquals(0x1020, graph.getFunctionAddress(1));
+        assertEquals(0, graph.getFunctionFirstBlock(0));
+        assertEquals(6, graph.getFunctionEndBlock(0));
+        assertEquals(6, graph.getFunctionFirstBlock(1));
+        assertEquals(7, graph.getFunctionEndBlock(1));
+        assertEquals(0, graph.getFunctionOf(5));
+        assertEquals(1, graph.getFunctionOf(6));
+    }
+
+    @Test
+    void empty() {
+        ControlFlowGraph graph = new ControlFlowGraph(new InstructionStore(), new int[]{0x1000});
+        assertEquals(0, graph.getBlockCount());
+        assertEquals(0, graph.getEdgeCount());
+        assertEquals(0, graph.getFunctionCount());
+        assertEquals(-1, graph.getBlockAt(0x1000));
+    }
+
+    private static Map<String, byte[]> inputs() throws IOException {
+        Map<String, byte[]> inputs = new LinkedHashMap<>();
+        for (String name : new String[]{"sample.elf", "test.elf", "test2.elf"}) {
+            inputs.put(name, Files.readAllBytes(Paths.get("elfs", name)));
+        }
+        for (boolean wide : new boolean[]{false, true}) {
+            ElfGenerator generator = new ElfGenerator();
+            generator.setTextSize(256 << 10);
+            generator.setSymbolCount(200);
+            generator.setBranchDensity(0.3);
+            generator.setWide(wide);
+            generator.setSeed(5);
+            inputs.put(wide ? "generated ELF64" : "generated ELF32", generator.generate());
+        }
+        return inputs;
+    }
+
+    // Same rules as the graph, from the decoded instruction rather than the raw bits
+    private static boolean endsBlock(DecodedInstruction cmd) {
+        return switch (cmd.mnemonic) {
+            case JAL -> cmd.rd == 0;
+            case C_JAL -> false;
+            case JALR, C_JR, C_JALR -> true;
+            default -> cmd.hasTarget;
+        };
+    }
+
+    private static boolean isCall(DecodedInstruction cmd) {
+        return cmd.mnemonic == Mnemonic.JAL && cmd.rd != 0 || cmd.mnemonic == Mnemonic.C_JAL;
+    }
+
+    @Test
+    void blocksOfRealFiles() throws IOException {
+        for (Map.Entry<String, byte[]> input : inputs().entrySet()) {
+            String name = input.getKey();
+            ElfParser parser = new ElfParser(input.getValue());
+            ElfModel model = parser.readModel();
+            InstructionStore text = parser.readText(model);
+            ControlFlowGraph graph = parser.readControlFlowGraph(model);
+            InstructionSet isa = model.getInstructionSet();
+            int n = text.size();
+            assertTrue(n > 0, name);
+
+            // Every instruction ends a block exactly when the decoder says it's a jump, and every block
+            // after the first starts after one, at a jump target or at a function
+            Set<Integer> leaders = new HashSet<>();
+            for (Symbol symbol : model.getSymbols()) {
+                if (symbol.getType() == 2 && model.isInCodeWindow(symbol.getFullValue())) {
+                    leaders.add(symbol.getValue());
+                }
+            }
+            Set<Integer> functions = new HashSet<>(leaders);
+            boolean[] ends = new boolean[n];
+            DecodedInstruction cmd = new DecodedInstruction();
+            for (int i = 0; i < n; i++) {
+                isa.decode(text.getRaw(i), text.getAddress(i), cmd);
+                ends[i] = endsBlock(cmd);
+                if (cmd.hasTarget && !isCall(cmd)) {
+                    leaders.add(cmd.getTarget());
+                }
+            }
+            assertEquals(0, graph.getBlockStart(0), name);
+            assertEquals(n, graph.getBlockEnd(graph.getBlockCount() - 1), name);
+            for (int b = 0; b < graph.getBlockCount(); b++) {
+                int start = graph.getBlockStart(b);
+                int end = graph.getBlockEnd(b);
+                assertTrue(start < end, name);
+                for (int i = start; i < end - 1; i++) {
+                    assertFalse(ends[i], name + " instruction " + i);
+                }
+                if (b > 0) {
+                    int block = b;
+                    assertTrue(ends[start - 1] || leaders.contains(text.getAddress(start)),
+                            () -> name + " block " + block);
+                }
+                assertEquals(b, graph.getBlockAt(text.getAddress(start)), name);
+                assertEquals(b, graph.getBlockAt(text.getAddress(end - 1)), name);
+            }
+
+            // Both edge lists hold the same pairs
+            List<Long> forward = new ArrayList<>();
+            List<Long> backward = new ArrayList<>();
+            for (int b = 0; b < graph.getBlockCount(); b++) {
+                assertTrue(graph.getSuccessorCount(b) <= 2, name);
+                for (int s : successors(graph, b)) {
+                    forward.add((long) b << 32 | s);
+                }
+                for (int p : predecessors(graph, b)) {
+                    backward.add((long) p << 32 | b);
+                }
+            }
+            forward.sort(null);
+            backward.sort(null);
+            assertEquals(graph.getEdgeCount(), forward.size(), name);
+            assertEquals(forward, backward, name);
+
+            // Functions split the blocks into consecutive ranges, each starting at the function
+            int count = graph.getFunctionCount();
+            assertTrue(count > 0, name);
+            int found = 0;
+            for (int f = 0; f < count; f++) {
+                int address = graph.getFunctionAddress(f);
+                assertTrue(functions.contains(address), name);
+                assertEquals(address, graph.getBlockAddress(graph.getFunctionFirstBlock(f)), name);
+                if (f > 0) {
+                    assertTrue(Integer.compareUnsigned(graph.getFunctionAddress(f - 1), address) < 0, name);
+                    assertEquals(graph.getFunctionEndBlock(f - 1), graph.getFunctionFirstBlock(f), name);
+                }
+                for (int b = graph.getFunctionFirstBlock(f); b < graph.getFunctionEndBlock(f); b++) {
+                    assertEquals(f, graph.getFunctionOf(b), name);
+                }
+            }
+            for (int address : functions) {
+                if (text.indexOf(address) >= 0) {
+                    found++;
+                }
+            }
+            assertEquals(found, count, name);
+            assertEquals(graph.getBlockCount(), graph.getFunctionEndBlock(count - 1), name);
+            for (int b = 0; b < graph.getFunctionFirstBlock(0); b++) {
+                assertEquals(-1, graph.getFunctionOf(b), name);
+            }
+        }
+    }
+}
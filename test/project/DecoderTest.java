@@ -0,0 +1,56 @@
+package project;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// The table-driven Decoder with Renderer must print every instruction exactly like AsmCommand
+class DecoderTest {
+    private static final int ADDRESS = 0x10000;
+
+    private static void assertSameAsAsmCommand(int inst) {
+        DecodedInstruction cmd = new DecodedInstruction();
+        Decoder.decode(inst, ADDRESS, cmd);
+        LabelTable labels = new LabelTable();
+        if (cmd.hasTarget) {
+            labels.putGenerated(cmd.getTarget());
+        }
+        StringBuilder line = new StringBuilder();
+        Renderer.appendInstruction(line, cmd, "", labels);
+        String expected = new AsmCommand(inst, ADDRESS, labels).toString();
+        assertEquals(expected, line.toString(), () -> "Instruction " + Integer.toHexString(inst));
+        Integer target = new AsmCommand(inst, ADDRESS, labels).getJumpAddress();
+        assertEquals(target != null, cmd.hasTarget, () -> "Target of " + Integer.toHexString(inst));
+        assertEquals(cmd.hasTarget, Decoder.hasTarget(inst), () -> "hasTarget of " + Integer.toHexString(inst));
+    }
+
+    @Test
+    void everyCompressedInstruction() {
+        for (int inst = 0; inst < 1 << 16; inst++) {
+            if ((inst & 0b11) != 0b11) {
+                assertSameAsAsmCommand(inst);
+            }
+        }
+    }
+
+    @Test
+    void randomInstructions() {
+        SplittableRandom random = new SplittableRandom(7);
+        for (int i = 0; i < 300_000; i++) {
+            assertSameAsAsmCommand(random.nextInt() | 0b11);
+        }
+    }
+
+    // Every opcode with random operands, most random words fall on a few opcodes
+    @Test
+    void everyOpcode() {
+        SplittableRandom random = new SplittableRandom(11);
+        for (int opcode = 0b11; opcode < 1 << 7; opcode += 4) {
+            for (int i = 0; i < 5_000; i++) {
+                assertSameAsAsmCommand(random.nextInt() & ~0x7f | opcode);
+            }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package project;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ElfParserTest {
+    private static byte[] wide(long baseAddress) {
+        ElfGenerator generator = new ElfGenerator();
+        generator.setTextSize(1 << 20);
+        generator.setWide(true);
+        generator.setBaseAddress(baseAddress);
+        return generator.generate();
+    }
+
+    private static void assertUnsupported(String expectedReason, String output) {
+        assertEquals("Unsupported file\n" + expectedReason, output.substring(0, output.indexOf('\n') + 1 + expectedReason.length()));
+    }
+
+    // .text runs from 0x7ffff00078 over 0x8000000000, the low 32 bits of its addresses would wrap
+    @Test
+    void codeAcrossA4GbBoundaryIsUnsupported() {
+        byte[] file = wide(0x7ffff00000L);
+        String reason = "Code at 0x7ffff00078 crosses a 4 GB boundary";
+        assertUnsupported(reason, TestElf.disassemble(file));
+        assertUnsupported(reason, TestElf.disassemble(file, parser -> parser.setAllSections(true)));
+        assertUnsupported(reason, TestElf.disassemble(file, parser -> parser.setSegments(true)));
+        assertUnsupported("Segment at 0x7ffff00000 crosses a 4 GB boundary",
+                TestElf.disassemble(TestElf.withoutSections(file), parser -> parser.setSegments(true)));
+    }
+
+    @Test
+    void codeInsideA4GbWindowAboveTheFirst() {
+        String output = TestElf.disassemble(wide(0x500010000L));
+        assertTrue(output.startsWith(".text\n0000000500010078       fn_0: "), output.substring(0, 100));
+        assertEquals(TestElf.disassemble(wide(0x10000)).lines().count(), output.lines().count());
+    }
+}
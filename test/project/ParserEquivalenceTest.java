@@ -0,0 +1,187 @@
+package project;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+// --parallel, --pipeline and the cache, with and without an incremental base, must print exactly
+// what a sequential sweep prints
+class ParserEquivalenceTest {
+    private static final ForkJoinPool POOL = new ForkJoinPool(4);
+
+    @TempDir
+    Path cacheDirectory;
+
+    private static List<byte[]> inputs() throws IOException {
+        List<byte[]> inputs = new ArrayList<>();
+        for (String name : new String[]{"sample.elf", "test.elf", "test2.elf"}) {
+            inputs.add(Files.readAllBytes(Paths.get("elfs", name)));
+        }
+        inputs.add(generate(false, 1));
+        inputs.add(generate(true, 2));
+        return inputs;
+    }
+
+    private static byte[] generate(boolean wide, long seed) {
+        ElfGenerator generator = new ElfGenerator();
+        generator.setTextSize(256 << 10);
+        generator.setSymbolCount(200);
+        generator.setBranchDensity(0.3);
+        generator.setWide(wide);
+        generator.setSeed(seed);
+        return generator.generate();
+    }
+
+    private static String disassemble(byte[] file, Consumer<ElfParser> setup) {
+        return TestElf.disassemble(file, setup);
+    }
+
+    private static String sequential(byte[] file) {
+        return TestElf.disassemble(file);
+    }
+
+    // Two C.NOPs over the first bytes of the function, the rest of the file stays as it was
+    private static byte[] patchFunction(byte[] file, String name) {
+        ElfModel model = new ElfParser(file).readModel();
+        Symbol symbol = model.findSymbol(name);
+        SectionHeader text = model.getText();
+        int offset = text.getSh_offset() + (symbol.getValue() - text.getAddress());
+        byte[] patched = file.clone();
+        for (int i = 0; i < 4; i += 2) {
+            patched[offset + i] = 0x01;
+            patched[offset + i + 1] = 0x00;
+        }
+        return patched;
+    }
+
+    // The same functions laid out again with TestElf.Builder, .text cut at the function symbols. edit
+    // changes the bytes of the named function, the functions after it move
+    private static byte[] rebuild(byte[] file, String name, UnaryOperator<byte[]> edit) {
+        ElfModel model = new ElfParser(file).readModel();
+        SectionHeader text = model.getText();
+        List<Symbol> functions = new ArrayList<>(model.getSymbols());
+        functions.removeIf(symbol -> symbol.getType() != 2);
+        functions.sort((a, b) -> Integer.compareUnsigned(a.getValue(), b.getValue()));
+        ByteArrayOutputStream code = new ByteArrayOutputStream();
+        List<Integer> sizes = new ArrayList<>();
+        for (int f = 0; f < functions.size(); f++) {
+            int start = functions.get(f).getValue() - text.getAddress();
+            int end = f + 1 < functions.size() ? functions.get(f + 1).getValue() - text.getAddress() : text.getSh_size();
+            byte[] chunk = Arrays.copyOfRange(file, text.getSh_offset() + start, text.getSh_offset() + end);
+            if (model.getSymbolName(functions.get(f)).equals(name)) {
+                chunk = edit.apply(chunk);
+            }
+            code.writeBytes(chunk);
+            sizes.add(chunk.length);
+        }
+        boolean wide = model.getHeader().is64();
+        TestElf.Builder elf = new TestElf.Builder(wide).entry(text.getFullAddress());
+        TestElf.Section section = elf.text(".text", text.getFullAddress(), code.toByteArray());
+        long address = text.getFullAddress();
+        for (int f = 0; f < functions.size(); f++) {
+            elf.function(model.getSymbolName(functions.get(f)), section, address, sizes.get(f));
+            address += sizes.get(f);
+        }
+        return elf.build();
+    }
+
+    private static byte[] prepend(byte[] chunk, int... halfwords) {
+        byte[] grown = new byte[2 * halfwords.length + chunk.length];
+        for (int i = 0; i < halfwords.length; i++) {
+            grown[2 * i] = (byte) halfwords[i];
+            grown[2 * i + 1] = (byte) (halfwords[i] >>> 8);
+        }
+        System.arraycopy(chunk, 0, grown, 2 * halfwords.length, chunk.length);
+        return grown;
+    }
+
+    private static byte[] dropFirstInstruction(byte[] chunk) {
+        return Arrays.copyOfRange(chunk, (chunk[0] & 0b11) == 0b11 ? 4 : 2, chunk.length);
+    }
+
+    @Test
+    void parallel() throws IOException {
+        for (byte[] file : inputs()) {
+            assertEquals(sequential(file), disassemble(file, parser -> parser.setParallel(POOL)));
+        }
+    }
+
+    @Test
+    void pipeline() throws IOException {
+        for (byte[] file : inputs()) {
+            assertEquals(sequential(file), disassemble(file, parser -> parser.setPipeline(3)));
+        }
+    }
+
+    @Test
+    void cached() throws IOException {
+        DisassemblyCache cache = new DisassemblyCache(cacheDirectory, DisassemblyCache.DEFAULT_LIMIT);
+        for (byte[] file : inputs()) {
+            String expected = sequential(file);
+            assertEquals(expected, disassemble(file, parser -> parser.setCache(cache))); // Miss
+            assertEquals(expected, disassemble(file, parser -> parser.setCache(cache))); // Hit
+        }
+    }
+
+    @Test
+    void incremental() {
+        DisassemblyCache cache = new DisassemblyCache(cacheDirectory, DisassemblyCache.DEFAULT_LIMIT);
+        for (boolean wide : new boolean[]{false, true}) {
+            byte[] previous = generate(wide, 3);
+            ElfModel previousModel = new ElfParser(previous).readModel();
+            disassemble(previous, parser -> parser.setCache(cache));
+            for (String function : new String[]{"fn_0", "fn_57", "fn_199"}) {
+                byte[] file = patchFunction(previous, function);
+                String expected = sequential(file);
+                assertNotEquals(sequential(previous), expected);
+                assertEquals(expected, disassemble(file, parser -> {
+                    parser.setCache(cache);
+                    parser.setPrevious(previousModel);
+                }), () -> "Patched " + function);
+            }
+        }
+    }
+
+    // Functions that grow or shrink move every function after them, those are copied shifted
+    @Test
+    void incrementalShifted() {
+        DisassemblyCache cache = new DisassemblyCache(cacheDirectory, DisassemblyCache.DEFAULT_LIMIT);
+        List<UnaryOperator<byte[]>> edits = List.of(
+                chunk -> prepend(chunk, 0x0001), // C.NOP
+                chunk -> prepend(chunk, 0x0001, 0x0001),
+                ParserEquivalenceTest::dropFirstInstruction);
+        for (boolean wide : new boolean[]{false, true}) {
+            byte[] generated = generate(wide, 6);
+            byte[] previous = rebuild(generated, null, UnaryOperator.identity());
+            ElfModel previousModel = new ElfParser(previous).readModel();
+            String unchanged = sequential(previous);
+            assertEquals(unchanged, disassemble(previous, parser -> parser.setCache(cache)));
+            for (String function : new String[]{"fn_0", "fn_57", "fn_198"}) {
+                for (int e = 0; e < edits.size(); e++) {
+                    byte[] file = rebuild(generated, function, edits.get(e));
+                    String expected = sequential(file);
+                    assertNotEquals(unchanged, expected);
+                    int edit = e;
+                    assertEquals(expected, disassemble(file, parser -> {
+                        parser.setCache(cache);
+                        parser.setPrevious(previousModel);
+                    }), () -> "Edit " + edit + " of " + function);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package project;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static project.TestElf.ET_REL;
+import static project.TestElf.SHF_ALLOC;
+import static project.TestElf.SHT_PROGBITS;
+import static project.TestElf.STT_SECTION;
+import static project.TestElf.code;
+
+// --relocations on a relocatable object: every immediate is zero and the relocations say what the
+// instructions refer to
+class RelocationTest {
+    private static final int R_RISCV_RELAX = 51;
+
+    private static final String EXPECTED_TEXT = """
+            .text
+            00000000       main: AUIPC, ra, 0  # R_RISCV_CALL_PLT puts
+            00000004           : JALR ra, 0(ra)
+            00000008           : BEQ, a0, zero, done  # R_RISCV_BRANCH done
+            0000000c           : AUIPC, a0, 0  # R_RISCV_PCREL_HI20 .rodata+0x10
+            00000010           : ADDI, a0, a0, 0  # R_RISCV_PCREL_LO12_I L0
+            00000014           : SW, a1, 0(a0)  # R_RISCV_PCREL_LO12_S L0
+            00000018           : C.BEQZ a0, done  # R_RISCV_RVC_BRANCH done
+            0000001a           : C.J helper-0x4  # R_RISCV_RVC_JUMP helper-0x4
+            0000001c           : JAL, zero, helper  # R_RISCV_JAL helper
+            00000020           : JALR zero, 0(ra)
+
+            """;
+
+    private static final String EXPECTED_SYMTAB = """
+            .symtab
+            Symbol Value              Size Type     Bind     Vis       Index Name
+            [   0] 0x0                   0 NOTYPE   LOCAL    DEFAULT   UNDEF\s
+            [   1] 0x0                   0 SECTION  LOCAL    DEFAULT       1\s
+            [   2] 0x0                   0 SECTION  LOCAL    DEFAULT       2\s
+            [   3] 0xC                   0 NOTYPE   LOCAL    DEFAULT       1 L0
+            [   4] 0x20                  0 NOTYPE   LOCAL    DEFAULT       1 done
+            [   5] 0x0                  36 FUNC     GLOBAL   DEFAULT       1 main
+            [   6] 0x0                   0 NOTYPE   GLOBAL   DEFAULT   UNDEF puts
+            [   7] 0x0                   0 NOTYPE   GLOBAL   DEFAULT   UNDEF helper
+            """;
+
+    // What an assembler leaves for a call, a branch, a PC-relative load and store and a few jumps
+    private static byte[] object(boolean wide) {
+        TestElf.Builder elf = new TestElf.Builder(wide).type(ET_REL);
+        TestElf.Section text = elf.text(".text", 0, code(
+                0x00000097, // auipc ra, 0
+                0x000080e7, // jalr ra, 0(ra)
+                0x00050063, // beq a0, zero, 0
+                0x00000517, // auipc a0, 0
+                0x00050513, // addi a0, a0, 0
+                0x00b52023, // sw a1, 0(a0)
+                0xc101, //     c.beqz a0, 0
+                0xa001, //     c.j 0
+                0x0000006f, // jal zero, 0
+                0x00008067)); // ret
+        TestElf.Section rodata = elf.section(".rodata", SHT_PROGBITS, SHF_ALLOC, 0, new byte[32]);
+        elf.symbol("", 0, 0, STT_SECTION, text.index);
+        int rodataSymbol = elf.symbol("", 0, 0, STT_SECTION, rodata.index);
+        int l0 = elf.symbol("L0", 0x0c, 0, 0, text.index);
+        int done = elf.symbol("done", 0x20, 0, 0, text.index);
+        elf.function("main", text, 0, 0x24);
+        int puts = elf.external("puts");
+        int helper = elf.external("helper");
+        elf.rela(text,
+                // Three at the call: the first known one wins, R_RISCV_RELAX is skipped
+                0x00, puts, R_RISCV_RELAX, 0,
+                0x00, puts, RelocationIndex.R_RISCV_CALL_PLT, 0,
+                0x00, rodataSymbol, RelocationIndex.R_RISCV_PCREL_HI20, 0,
+                0x08, done, RelocationIndex.R_RISCV_BRANCH, 0,
+                0x0c, rodataSymbol, RelocationIndex.R_RISCV_PCREL_HI20, 0x10,
+                0x10, l0, RelocationIndex.R_RISCV_PCREL_LO12_I, 0,
+                0x14, l0, RelocationIndex.R_RISCV_PCREL_LO12_S, 0,
+                0x18, done, RelocationIndex.R_RISCV_RVC_BRANCH, 0,
+                0x1a, helper, RelocationIndex.R_RISCV_RVC_JUMP, -4,
+                0x1c, helper, RelocationIndex.R_RISCV_JAL, 0,
+                0x20, 0, R_RISCV_RELAX, 0);
+        return elf.build();
+    }
+
+    // ELF64 prints 16 hex digits per address
+    private static String widen(String text) {
+        return text.replaceAll("(?m)^([0-9a-f]{8} )", "00000000$1");
+    }
+
+    @Test
+    void relocatableObject() {
+        assertEquals(EXPECTED_TEXT + EXPECTED_SYMTAB,
+                TestElf.disassemble(object(false), parser -> parser.setRelocations(true)));
+        assertEquals(widen(EXPECTED_TEXT) + EXPECTED_SYMTAB,
+                TestElf.disassemble(object(true), parser -> parser.setRelocations(true)));
+    }
+
+    @Test
+    void allSections() {
+        assertEquals(EXPECTED_TEXT + EXPECTED_SYMTAB, TestElf.disassemble(object(false), parser -> {
+            parser.setRelocations(true);
+            parser.setAllSections(true);
+        }));
+    }
+
+    // Without --relocations the zero offsets point at the instructions themselves
+    @Test
+    void withoutRelocations() {
+        assertEquals("""
+                .text
+                00000000       main: AUIPC, ra, 0
+                00000004           : JALR ra, 0(ra)
+                00000008  LOC_00000: BEQ, a0, zero, LOC_00000
+                0000000c           : AUIPC, a0, 0
+                00000010           : ADDI, a0, a0, 0
+                00000014           : SW, a1, 0(a0)
+                00000018  LOC_00001: C.BEQZ a0, LOC_00001
+                0000001a  LOC_00002: C.J LOC_00002
+                0000001c  LOC_00003: JAL, zero, LOC_00003
+                00000020           : JALR zero, 0(ra)
+
+                """ + EXPECTED_SYMTAB, TestElf.disassemble(object(false)));
+    }
+
+    @Test
+    void firstKnownRelocationWins() {
+        RelocationIndex index = new RelocationIndex(0);
+        index.add(0x10, R_RISCV_RELAX, "a", 0);
+        index.add(0x10, RelocationIndex.R_RISCV_JAL, "b", 0);
+        index.add(0x10, RelocationIndex.R_RISCV_CALL, "c", 8);
+        index.add(0x14, RelocationIndex.R_RISCV_CALL, "d", -8);
+        assertEquals(2, index.size());
+        int relocation = index.find(0x10);
+        assertEquals(RelocationIndex.R_RISCV_JAL, index.getType(relocation));
+        assertEquals("b", index.getTarget(relocation));
+        assertEquals("d-0x8", index.getTarget(index.find(0x14)));
+        assertEquals(IntIntMap.NO_VALUE, index.find(0x18));
+        assertTrue(index.isTargetAt(0x10));
+        assertFalse(index.isTargetAt(0x14));
+    }
+}
@@ -0,0 +1,159 @@
+package project;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static project.TestElf.ET_REL;
+import static project.TestElf.PF_R;
+import static project.TestElf.PF_X;
+import static project.TestElf.PT_LOAD;
+import static project.TestElf.SHF_ALLOC;
+import static project.TestElf.SHF_WRITE;
+import static project.TestElf.SHT_PROGBITS;
+import static project.TestElf.code;
+
+// Exact --all-sections and --segments output for files the default .text listing doesn't cover
+class SectionsTest {
+    private static final String EMPTY_SYMTAB = """
+            .symtab
+            Symbol Value              Size Type     Bind     Vis       Index Name
+            """;
+
+    // The segment runs on into .rodata, whose bytes are decoded like code: the padding after .text,
+    // an ADDI, a JAL to itself and a string that ends in half an instruction
+    private static final String SEGMENT = """
+            00010008           : JALR zero, 0(ra)
+            0001000c           : C.NOP
+            0001000e           : INVALID
+            00010010           : ADDI, a0, a0, 1
+            00010014  LOC_00000: JAL, zero, LOC_00000
+            00010018           : C.LI tp, 16
+            0001001a           : UNKNOWN_COMMAND
+
+            """;
+
+    // Two code sections at address 0, like -ffunction-sections leaves them, and a data section
+    private static byte[] object() {
+        TestElf.Builder elf = new TestElf.Builder(false).type(ET_REL);
+        TestElf.Section text = elf.text(".text", 0, code(
+                0x00050463, // beq a0, zero, 8
+                0x00158593, // addi a1, a1, 1
+                0x00008067, // ret
+                0x0001)); //   c.nop
+        TestElf.Section cold = elf.text(".text.unlikely", 0, code(
+                0x00158593, // addi a1, a1, 1
+                0x0040006f, // jal zero, 4
+                0x00008067)); // ret
+        elf.section(".data", SHT_PROGBITS, SHF_ALLOC | SHF_WRITE, 0, new byte[8]);
+        elf.function("main", text, 0, 14);
+        elf.function("cold", cold, 0, 12);
+        return elf.build();
+    }
+
+    // One PT_LOAD over .text and the .rodata after it
+    private static byte[] executable() {
+        TestElf.Builder elf = new TestElf.Builder(false).entry(0x10000);
+        TestElf.Section text = elf.text(".text", 0x10000, code(
+                0x00000517, // auipc a0, 0
+                0x01050513, // addi a0, a0, 16
+                0x00008067, // ret
+                0x0001)); //   c.nop
+        // An ADDI, a JAL and "ABC", 2 bytes after .text in the file and in memory
+        elf.section(".rodata", SHT_PROGBITS, SHF_ALLOC, 0x10010,
+                new byte[]{0x13, 0x05, 0x15, 0x00, 0x6f, 0x00, 0x00, 0x00, 'A', 'B', 'C', 0});
+        elf.function("_start", text, 0x10000, 14);
+        elf.segment(PT_LOAD, PF_R | PF_X, text, 0x1c);
+        return elf.build();
+    }
+
+    // Labels are keyed by address, so the sections share them: both functions start at 0 and the
+    // later symbol names both, the jump target at 8 is one label in both sections
+    @Test
+    void overlappingSections() {
+        assertEquals("""
+                .text
+                00000000       cold: BEQ, a0, zero, LOC_00000
+                00000004           : ADDI, a1, a1, 1
+                00000008  LOC_00000: JALR zero, 0(ra)
+                0000000c           : C.NOP
+
+                .text.unlikely
+                00000000       cold: ADDI, a1, a1, 1
+                00000004           : JAL, zero, LOC_00000
+                00000008  LOC_00000: JALR zero, 0(ra)
+
+                .symtab
+                Symbol Value              Size Type     Bind     Vis       Index Name
+                [   0] 0x0                   0 NOTYPE   LOCAL    DEFAULT   UNDEF\s
+                [   1] 0x0                  14 FUNC     GLOBAL   DEFAULT       1 main
+                [   2] 0x0                  12 FUNC     GLOBAL   DEFAULT       2 cold
+                """, TestElf.disassemble(object(), parser -> parser.setAllSections(true)));
+    }
+
+    // Only sections count, .rodata isn't executable even though the segment over it is
+    @Test
+    void sectionsInsideASegment() {
+        assertEquals("""
+                .text
+                00010000     _start: AUIPC, a0, 0
+                00010004           : ADDI, a0, a0, 16
+                00010008           : JALR zero, 0(ra)
+                0001000c           : C.NOP
+
+                .symtab
+                Symbol Value              Size Type     Bind     Vis       Index Name
+                [   0] 0x0                   0 NOTYPE   LOCAL    DEFAULT   UNDEF\s
+                [   1] 0x10000              14 FUNC     GLOBAL   DEFAULT       1 _start
+                """, TestElf.disassemble(executable(), parser -> parser.setAllSections(true)));
+    }
+
+    // Nothing to disassemble prints what the default output prints for a file without .text
+    @Test
+    void withoutSections() {
+        byte[] file = TestElf.withoutSections(executable());
+        String expected = ".text\n\n" + EMPTY_SYMTAB;
+        assertEquals(expected, TestElf.disassemble(file));
+        assertEquals(expected, TestElf.disassemble(file, parser -> parser.setAllSections(true)));
+    }
+
+    @Test
+    void segmentIntoRodata() {
+        assertEquals("""
+                segment 0
+                00010000     _start: AUIPC, a0, 0
+                00010004           : ADDI, a0, a0, 16
+                """ + SEGMENT + """
+                .symtab
+                Symbol Value              Size Type     Bind     Vis       Index Name
+                [   0] 0x0                   0 NOTYPE   LOCAL    DEFAULT   UNDEF\s
+                [   1] 0x10000              14 FUNC     GLOBAL   DEFAULT       1 _start
+                """, TestElf.disassemble(executable(), parser -> parser.setSegments(true)));
+    }
+
+    // A stripped image has no symbols and no section names, the segment reads the same
+    @Test
+    void segmentWithoutSections() {
+        assertEquals("""
+                segment 0
+                00010000           : AUIPC, a0, 0
+                00010004           : ADDI, a0, a0, 16
+                """ + SEGMENT + EMPTY_SYMTAB,
+                TestElf.disassemble(TestElf.withoutSections(executable()), parser -> parser.setSegments(true)));
+    }
+
+    // The generator's PT_LOAD starts with the ELF and program headers, decoding starts at E_ENTRY, the
+    // start of .text, and reads the same as .text up to the end of the segment
+    @Test
+    void segmentOverHeaders() {
+        for (boolean wide : new boolean[]{false, true}) {
+            ElfGenerator generator = new ElfGenerator();
+            generator.setTextSize(64 << 10);
+            generator.setSymbolCount(50);
+            generator.setWide(wide);
+            byte[] file = generator.generate();
+            String text = TestElf.disassemble(file);
+            assertEquals("segment 0" + text.substring(".text".length()),
+                    TestElf.disassemble(file, parser -> parser.setSegments(true)));
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package project;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static project.TestElf.code;
+
+class StringTableTest {
+    // Names are bytes, the last one of "caf\u00e9" is 0xe9
+    private static byte[] file() {
+        TestElf.Builder elf = new TestElf.Builder(false).entry(0x10000);
+        TestElf.Section text = elf.text(".text", 0x10000, code(0x00008067, 0x00008067));
+        elf.function("main", text, 0x10000, 4);
+        elf.function("caf\u00e9", text, 0x10004, 4);
+        return elf.build();
+    }
+
+    private static ElfModel model() {
+        return new ElfParser(file()).readModel();
+    }
+
+    @Test
+    void nonAsciiNames() {
+        ElfModel model = model();
+        Symbol symbol = model.getSymbols().get(2);
+        StringTable strings = model.getStringTable();
+        String name = strings.get(symbol.getName());
+        assertEquals("caf\u00e9", name);
+        assertEquals(0xe9, name.charAt(3));
+        assertSame(symbol, model.findSymbol(name));
+        assertTrue(strings.matches(symbol.getName(), StringTable.encode(name)));
+        assertEquals("\u00e9", strings.get(symbol.getName() + 3)); // Suffix of the same bytes
+        assertTrue(TestElf.disassemble(file()).contains("00010004       caf\u00e9: JALR zero, 0(ra)\n"));
+    }
+
+    @Test
+    void lookups() {
+        ElfModel model = model();
+        StringTable strings = model.getStringTable();
+        Symbol main = model.getSymbols().get(1);
+        assertSame(strings.get(main.getName()), strings.get(main.getName())); // Decoded once
+        assertEquals("", strings.get(0));
+        assertEquals("ain", strings.get(main.getName() + 1));
+        assertFalse(strings.matches(main.getName(), StringTable.encode("mai")));
+        assertFalse(strings.matches(main.getName(), StringTable.encode("main2")));
+        assertNull(model.findSymbol("cafe"));
+        assertThrows(AssertionError.class, () -> strings.get(strings.getSection().getSh_size()));
+        assertThrows(AssertionError.class, () -> strings.get(-1));
+    }
+}
@@ -0,0 +1,141 @@
+package project;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SymbolIndexTest {
+    private static final int NONE = SymbolIndex.NONE;
+
+    // GLOBAL FUNC in section 1, numbered by position in the list
+    private static List<Symbol> symbols(long... valueAndSize) {
+        List<Symbol> symbols = new ArrayList<>();
+        for (int i = 0; i < valueAndSize.length; i += 2) {
+            symbols.add(new Symbol(i / 2, 0, valueAndSize[i], valueAndSize[i + 1], 0x12, 0, 1));
+        }
+        return symbols;
+    }
+
+    private static void assertContaining(SymbolIndex index, int[] pcs, int[] expected) {
+        for (int k = 0; k < pcs.length; k++) {
+            int pc = pcs[k];
+            assertEquals(expected[k], index.containing(pc), () -> "0x" + Integer.toHexString(pc));
+        }
+        int[] out = new int[pcs.length];
+        index.containing(pcs, out);
+        assertArrayEquals(expected, out);
+    }
+
+    @Test
+    void nested() {
+        SymbolIndex index = new SymbolIndex(symbols(
+                0x1000, 0x100, // 0: outer
+                0x1010, 0x40, //  1: inside 0
+                0x1020, 0x10, //  2: inside 1
+                0x1080, 0x20, //  3: inside 0, after 1
+                0x1200, 0x10)); // 4
+        assertContaining(index,
+                new int[]{0x1000, 0x1010, 0x1024, 0x1030, 0x1050, 0x1080, 0x10a0, 0x10ff, 0x1100, 0x1200},
+                new int[]{0, 1, 2, 1, 0, 3, 0, 0, NONE, 4});
+    }
+
+    @Test
+    void zeroSize() {
+        SymbolIndex index = new SymbolIndex(symbols(
+                0x1000, 0x20, // 0
+                0x1010, 0, //    1: a label inside 0
+                0x1040, 0)); //  2: a label on its own
+        assertContaining(index, new int[]{0x1010, 0x1040}, new int[]{0, NONE});
+        assertEquals(1, index.nearest(0x1010));
+        assertEquals(2, index.nearest(0x1044));
+    }
+
+    @Test
+    void equalStarts() {
+        // Innermost is the shortest, wherever it sits in the table
+        SymbolIndex index = new SymbolIndex(symbols(
+                0x1000, 0x10, // 0
+                0x1000, 0x100, // 1
+                0x1000, 0x40, // 2
+                0x2000, 0x10, // 3
+                0x2000, 0x10)); // 4: same as 3, the later one wins
+        assertContaining(index,
+                new int[]{0x1000, 0x100f, 0x1010, 0x103f, 0x1040, 0x10ff, 0x2008},
+                new int[]{0, 0, 2, 2, 1, 1, 4});
+    }
+
+    @Test
+    void misses() {
+        SymbolIndex index = new SymbolIndex(symbols(
+                0x1000, 0x10,
+                0x1100, 0x10,
+                0x80000000L, 0x10)); // Above the signed range
+        assertContaining(index,
+                new int[]{0, 0xfff, 0x1010, 0x10ff, 0x1110, 0x7fffffff, 0x80000008, 0x80000010, -1},
+                new int[]{NONE, NONE, NONE, NONE, NONE, NONE, 2, NONE, NONE});
+        assertEquals(NONE, index.nearest(0xfff));
+        assertEquals(NONE, new SymbolIndex(List.of()).containing(0x1000));
+    }
+
+    @Test
+    void skippedSymbols() {
+        List<Symbol> symbols = new ArrayList<>(symbols(0x1000, 0x100));
+        symbols.add(new Symbol(1, 0, 0x1000, 0x10, 0x12, 0, 0)); // UNDEF
+        symbols.add(new Symbol(2, 0, 0x1000, 0x10, 0x12, 0, 0xfff1)); // ABS
+        symbols.add(new Symbol(3, 0, 0x1000, 0x10, 0x03, 0, 1)); // SECTION
+        symbols.add(new Symbol(4, 0, 0x1000, 0x10, 0x04, 0, 1)); // FILE
+        symbols.add(new Symbol(5, 0, 0x1_0000_1000L, 0x10, 0x12, 0, 1)); // Another 4 GB window
+        SymbolIndex index = new SymbolIndex(symbols);
+        assertEquals(1, index.size());
+        assertEquals(0, index.containing(0x1008));
+
+        SymbolIndex upper = new SymbolIndex(symbols, 1);
+        int[] out = new int[3];
+        upper.containing(new long[]{0x1_0000_1008L, 0x1008, 0x2_0000_1008L}, out);
+        assertArrayEquals(new int[]{5, NONE, NONE}, out);
+    }
+
+    private static long end(Symbol symbol) {
+        return symbol.getFullValue() + Integer.toUnsignedLong(symbol.getSize());
+    }
+
+    // Innermost by brute force: latest start, then the earliest end, then the latest in the table
+    private static int innermost(List<Symbol> symbols, int pc) {
+        long address = Integer.toUnsignedLong(pc);
+        Symbol best = null;
+        for (Symbol symbol : symbols) {
+            long start = symbol.getFullValue();
+            if (start <= address && address < end(symbol) && (best == null || start > best.getFullValue()
+                    || start == best.getFullValue() && end(symbol) <= end(best))) {
+                best = symbol;
+            }
+        }
+        return best == null ? NONE : best.getSymbolIndex();
+    }
+
+    @Test
+    void randomAgainstBruteForce() {
+        SplittableRandom random = new SplittableRandom(3);
+        for (int round = 0; round < 50; round++) {
+            long[] valueAndSize = new long[2 * random.nextInt(1, 200)];
+            for (int i = 0; i < valueAndSize.length; i += 2) {
+                valueAndSize[i] = 0x1000 + 4L * random.nextInt(1024);
+                valueAndSize[i + 1] = random.nextInt(8) == 0 ? 0 : 2L * random.nextInt(1, 600);
+            }
+            List<Symbol> symbols = symbols(valueAndSize);
+            SymbolIndex index = new SymbolIndex(symbols);
+            int[] pcs = new int[2000];
+            int[] expected = new int[pcs.length];
+            for (int k = 0; k < pcs.length; k++) {
+                pcs[k] = 0xf00 + 2 * k;
+                expected[k] = innermost(symbols, pcs[k]);
+            }
+            assertContaining(index, pcs, expected);
+        }
+    }
+}
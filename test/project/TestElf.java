@@ -0,0 +1,304 @@
+package project;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Helpers shared by the tests that disassemble whole files, and a builder for small ELF files with
+// exactly the sections, segments, symbols and relocations a test needs
+final class TestElf {
+    static final int ET_REL = 1;
+    static final int ET_EXEC = 2;
+    static final int SHT_PROGBITS = 1;
+    static final int SHT_RELA = 4;
+    static final int SHT_NOBITS = 8;
+    static final int SHF_WRITE = 1;
+    static final int SHF_ALLOC = 2;
+    static final int SHF_EXECINSTR = 4;
+    static final int PT_LOAD = 1;
+    static final int PF_X = 1;
+    static final int PF_R = 4;
+    static final int STT_FUNC = 2;
+    static final int STT_SECTION = 3;
+    static final int STB_GLOBAL = 1 << 4;
+
+    private TestElf() {
+    }
+
+    // Little-endian instruction words, compressed ones take two bytes
+    static byte[] code(int... instructions) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int inst : instructions) {
+            out.write(inst);
+            out.write(inst >>> 8);
+            if ((inst & 0b11) == 0b11) {
+                out.write(inst >>> 16);
+                out.write(inst >>> 24);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    static final class Section {
+        final String name;
+        final int type;
+        final long flags;
+        final long address;
+        final byte[] data;
+        int index;
+        int link;
+        int info;
+        int entrySize;
+        long offset;
+
+        private Section(String name, int type, long flags, long address, byte[] data) {
+            this.name = name;
+            this.type = type;
+            this.flags = flags;
+            this.address = address;
+            this.data = data;
+        }
+    }
+
+    private record SymbolEntry(String name, long value, long size, int info, int shndx) {
+    }
+
+    private record Segment(int type, int flags, Section first, long size) {
+    }
+
+    // Sections are numbered from 1 in the order they are added, .symtab, .strtab and .shstrtab follow
+    // them. Section data is laid out in the same order after the program headers, 8-byte aligned
+    static final class Builder {
+        private final boolean wide;
+        private int type = ET_EXEC;
+        private long entry;
+        private final List<Section> sections = new ArrayList<>();
+        private final List<SymbolEntry> symbols = new ArrayList<>();
+        private final List<Segment> segments = new ArrayList<>();
+
+        Builder(boolean wide) {
+            this.wide = wide;
+        }
+
+        Builder type(int type) {
+            this.type = type;
+            return this;
+        }
+
+        Builder entry(long entry) {
+            this.entry = entry;
+            return this;
+        }
+
+        Section section(String name, int type, long flags, long address, byte[] data) {
+            Section section = new Section(name, type, flags, address, data);
+            sections.add(section);
+            section.index = sections.size();
+            return section;
+        }
+
+        Section text(String name, long address, byte[] code) {
+            return section(name, SHT_PROGBITS, SHF_ALLOC | SHF_EXECINSTR, address, code);
+        }
+
+        // Symbol index, 0 is the null symbol. Locals have to come before globals
+        int symbol(String name, long value, long size, int info, int shndx) {
+            symbols.add(new SymbolEntry(name, value, size, info, shndx));
+            return symbols.size();
+        }
+
+        int function(String name, Section section, long value, long size) {
+            return symbol(name, value, size, STB_GLOBAL | STT_FUNC, section.index);
+        }
+
+        // Undefined global, what calls to other objects refer to
+        int external(String name) {
+            return symbol(name, 0, 0, STB_GLOBAL, 0);
+        }
+
+        // Elf_Rela entries against target, four numbers each: r_offset, symbol, type, r_addend
+        Section rela(Section target, long... entries) {
+            ByteBuffer out = ByteBuffer.allocate(entries.length / 4 * (wide ? 24 : 12)).order(ByteOrder.LITTLE_ENDIAN);
+            for (int i = 0; i < entries.length; i += 4) {
+                if (wide) {
+                    out.putLong(entries[i]).putLong(entries[i + 1] << 32 | entries[i + 2]).putLong(entries[i + 3]);
+                } else {
+                    out.putInt((int) entries[i]).putInt((int) (entries[i + 1] << 8 | entries[i + 2]))
+                            .putInt((int) entries[i + 3]);
+                }
+            }
+            Section section = section(".rela" + target.name, SHT_RELA, 0, 0, out.array());
+            section.info = target.index;
+            section.entrySize = wide ? 24 : 12;
+            return section;
+        }
+
+        // Starts at the first byte of first, both in the file and in memory
+        void segment(int type, int flags, Section first, long size) {
+            segments.add(new Segment(type, flags, first, size));
+        }
+
+        byte[] build() {
+            int headerSize = wide ? 64 : 52;
+            int programHeaderSize = wide ? 56 : 32;
+            int sectionSize = wide ? 64 : 40;
+            int symbolSize = wide ? 24 : 16;
+
+            ByteArrayOutputStream strtab = new ByteArrayOutputStream();
+            strtab.write(0);
+            ByteBuffer symtab = ByteBuffer.allocate((symbols.size() + 1) * symbolSize).order(ByteOrder.LITTLE_ENDIAN);
+            symtab.position(symbolSize);
+            int locals = 1;
+            for (SymbolEntry symbol : symbols) {
+                int name = symbol.name.isEmpty() ? 0 : strtab.size();
+                if (name != 0) {
+                    strtab.writeBytes(symbol.name.getBytes(StandardCharsets.ISO_8859_1));
+                    strtab.write(0);
+                }
+                if (symbol.info >>> 4 == 0 && locals == symtab.position() / symbolSize) {
+                    locals++;
+                }
+                if (wide) {
+                    symtab.putInt(name).put((byte) symbol.info).put((byte) 0).putShort((short) symbol.shndx)
+                            .putLong(symbol.value).putLong(symbol.size);
+                } else {
+                    symtab.putInt(name).putInt((int) symbol.value).putInt((int) symbol.size)
+                            .put((byte) symbol.info).put((byte) 0).putShort((short) symbol.shndx);
+                }
+            }
+            List<Section> all = new ArrayList<>(sections);
+            Section symtabSection = new Section(".symtab", 2, 0, 0, symtab.array());
+            Section strtabSection = new Section(".strtab", 3, 0, 0, strtab.toByteArray());
+            symtabSection.index = all.size() + 1;
+            strtabSection.index = all.size() + 2;
+            symtabSection.link = strtabSection.index;
+            symtabSection.info = locals;
+            symtabSection.entrySize = symbolSize;
+            all.add(symtabSection);
+            all.add(strtabSection);
+            for (Section section : sections) {
+                if (section.type == SHT_RELA) {
+                    section.link = symtabSection.index;
+                }
+            }
+            ByteArrayOutputStream shstrtab = new ByteArrayOutputStream();
+            shstrtab.write(0);
+            Section shstrtabSection = new Section(".shstrtab", 3, 0, 0, null);
+            shstrtabSection.index = all.size() + 1;
+            all.add(shstrtabSection);
+            int[] names = new int[all.size()];
+            for (int i = 0; i < all.size(); i++) {
+                names[i] = shstrtab.size();
+                shstrtab.writeBytes(all.get(i).name.getBytes(StandardCharsets.ISO_8859_1));
+                shstrtab.write(0);
+            }
+            byte[] shstrtabData = shstrtab.toByteArray();
+
+            long offset = headerSize + (long) segments.size() * programHeaderSize;
+            for (Section section : all) {
+                byte[] data = section == shstrtabSection ? shstrtabData : section.data;
+                if (section.type != SHT_NOBITS) {
+                    offset = (offset + 7) & ~7;
+                    section.offset = offset;
+                    offset += data.length;
+                }
+            }
+            long sectionsOffset = (offset + 7) & ~7;
+            ByteBuffer out = ByteBuffer.allocate((int) sectionsOffset + (all.size() + 1) * sectionSize)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+
+            out.put(new byte[]{0x7f, 'E', 'L', 'F', (byte) (wide ? 2 : 1), 1, 1});
+            out.position(16);
+            out.putShort((short) type).putShort((short) 0xf3).putInt(1);
+            putAddress(out, entry);
+            putAddress(out, segments.isEmpty() ? 0 : headerSize);
+            putAddress(out, sectionsOffset);
+            out.putInt(0).putShort((short) headerSize).putShort((short) programHeaderSize)
+                    .putShort((short) segments.size()).putShort((short) sectionSize)
+                    .putShort((short) (all.size() + 1)).putShort((short) shstrtabSection.index);
+
+            for (Segment segment : segments) {
+                out.putInt(segment.type);
+                if (wide) {
+                    out.putInt(segment.flags);
+                }
+                putAddress(out, segment.first.offset);
+                putAddress(out, segment.first.address);
+                putAddress(out, segment.first.address);
+                putAddress(out, segment.size);
+                putAddress(out, segment.size);
+                if (!wide) {
+                    out.putInt(segment.flags);
+                }
+                putAddress(out, 4);
+            }
+
+            for (Section section : all) {
+                byte[] data = section == shstrtabSection ? shstrtabData : section.data;
+                if (section.type != SHT_NOBITS) {
+                    out.put((int) section.offset, data);
+                }
+            }
+
+            out.position((int) sectionsOffset + sectionSize); // Section 0 stays zero
+            for (int i = 0; i < all.size(); i++) {
+                Section section = all.get(i);
+                byte[] data = section == shstrtabSection ? shstrtabData : section.data;
+                out.putInt(names[i]).putInt(section.type);
+                putAddress(out, section.flags);
+                putAddress(out, section.address);
+                putAddress(out, section.offset);
+                putAddress(out, data.length);
+                out.putInt(section.link).putInt(section.info);
+                putAddress(out, section.flags == 0 ? 1 : 4);
+                putAddress(out, section.entrySize);
+            }
+            return out.array();
+        }
+
+        private void putAddress(ByteBuffer out, long value) {
+            if (wide) {
+                out.putLong(value);
+            } else {
+                out.putInt((int) value);
+            }
+        }
+    }
+
+    static String disassemble(byte[] file, Consumer<ElfParser> setup) {
+        ElfParser parser = new ElfParser(file);
+        setup.accept(parser);
+        StringWriter out = new StringWriter();
+        try (PrintWriter writer = new PrintWriter(out)) {
+            parser.parse(writer);
+        }
+        return out.toString();
+    }
+
+    static String disassemble(byte[] file) {
+        return disassemble(file, parser -> {
+        });
+    }
+
+    // Same file with no section headers, like a stripped executable that only has segments
+    static byte[] withoutSections(byte[] file) {
+        byte[] stripped = file.clone();
+        ByteBuffer header = ByteBuffer.wrap(stripped).order(ByteOrder.LITTLE_ENDIAN);
+        boolean wide = stripped[4] == 2;
+        if (wide) {
+            header.putLong(40, 0); // e_shoff
+        } else {
+            header.putInt(32, 0);
+        }
+        int counts = wide ? 60 : 48;
+        header.putShort(counts, (short) 0); // e_shnum
+        header.putShort(counts + 2, (short) 0); // e_shstrndx
+        return stripped;
+    }
+}